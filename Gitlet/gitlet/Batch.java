@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Runs many commands against a single repository in one process.
+ *  The commands are read one per line from a file or from the standard input, with the arguments
+ *  separated by spaces and quoted like in a shell ("..." or '...', with \ escaping the next character
+ *  outside single quotes). Blank lines and lines starting with # are skipped, e.g.
+ *  <pre>
+ *  add src
+ *  commit "Import revision 1"
+ *  </pre>
+ *  The state of the repository is only saved every batch.checkpoint commands (see Config), and once at
+ *  the end, instead of after every command. By default it is only saved at the end. If a command fails
+ *  with an error, the batch stops without saving : the failed command may have changed the state in memory
+ *  half way, so the state is reloaded from the disk, dropping the changes made since the last save.
+ *
+ *  @author Rishikesh S
+ */
+public class Batch {
+
+    /** Runs the commands read from SOURCE (a file name, or null for the standard input) against REPO */
+    public static void run (Repository repo, String source) {
+        int checkpoint = Math.max(0, Config.getInt("batch.checkpoint", 0));
+        InputStream in;
+        try {
+            File source_file = source == null ? null : new File(source);
+            if (source_file != null && !source_file.isAbsolute()) {
+                source_file = Utils.join(Repository.CWD, source);
+            }
+            in = source_file == null ? System.in : new FileInputStream(source_file);
+        } catch (IOException e) {
+            System.out.println("File does not exist.");
+            return;
+        }
+        boolean failed = false;
+        repo.deferSaves(true);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            int line_number = 0;
+            int commands = 0;
+            while ((line = reader.readLine()) != null) {
+                line_number += 1;
+                if (line.trim().startsWith("#")) {
+                    continue;
+                }
+                List<String> args = splitArguments(line);
+                if (args == null) {
+                    System.out.printf("Line %d : unbalanced quotes.\n", line_number);
+                    continue;
+                }
+                if (args.isEmpty()) {
+                    continue;
+                }
+                if (args.get(0).equals("batch") || args.get(0).equals("daemon") || args.get(0).equals("watch")) {
+                    System.out.printf("Line %d : %s cannot be run in batch mode.\n", line_number, args.get(0));
+                    continue;
+                }
+                try {
+                    Main.dispatch(repo, args.toArray(new String[0]));
+                } catch (RuntimeException e) {
+                    System.out.printf("Line %d : %s\n", line_number, e.getMessage());
+                    failed = true;
+                    break;
+                }
+                commands += 1;
+                if (checkpoint > 0 && commands % checkpoint == 0) {
+                    repo.flushRepoState();
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error when reading the commands");
+        } finally {
+            repo.deferSaves(false);
+        }
+        if (failed) {
+            System.out.println("Batch stopped. The changes since the last save were not saved.");
+            repo.reload();
+            return;
+        }
+        repo.flushRepoState();
+    }
+
+    /** Splits LINE into arguments, the way a shell would. Returns null if a quote is not closed */
+    static List<String> splitArguments (String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean in_argument = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                }
+                else {
+                    current.append(c);
+                }
+            }
+            else if (c == '\\' && i + 1 < line.length()) {
+                i += 1;
+                current.append(line.charAt(i));
+                in_argument = true;
+            }
+            else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                }
+                else {
+                    current.append(c);
+                }
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+                in_argument = true;
+            }
+            else if (Character.isWhitespace(c)) {
+                if (in_argument) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    in_argument = false;
+                }
+            }
+            else {
+                current.append(c);
+                in_argument = true;
+            }
+        }
+        if (quote != 0) {
+            return null;
+        }
+        if (in_argument) {
+            args.add(current.toString());
+        }
+        return args;
+    }
+}
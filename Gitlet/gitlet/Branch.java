@@ -1,6 +1,8 @@
 package gitlet;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -10,6 +12,9 @@ import java.util.TreeMap;
  */
 public class Branch implements Serializable {
 
+    /** Fixed so that the branches of older repositories can still be deserialized */
+    private static final long serialVersionUID = 849934796358172812L;
+
     /** TreeMap which stores all the branches. Key is the branch name and value is the commit hash of its latest commit */
     private TreeMap<String, String> all_branches;
     /** Stores the current branch in the repository */
@@ -44,6 +49,11 @@ public class Branch implements Serializable {
         return this.all_branches.keySet();
     }
 
+    /** Returns the commits at the heads of all the branches */
+    public Collection<String> getHeads () {
+        return this.all_branches.values();
+    }
+
     /** Returns the commit at the head of the given branch */
     public String branchHead(String branch) {
         return this.all_branches.get(branch);
@@ -54,6 +64,33 @@ public class Branch implements Serializable {
         return this.all_branches.containsKey(branch);
     }
 
+    /** Returns the encoding of the branches (see Codec) */
+    public byte[] toBytes () {
+        Codec.Writer out = new Codec.Writer(Codec.BRANCHES);
+        out.writeString(this.current_branch);
+        out.writeVarint(this.all_branches.size());
+        for (Map.Entry<String, String> entry : this.all_branches.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeHash(entry.getValue());
+        }
+        return out.toBytes();
+    }
+
+    /** Returns the branches encoded in BYTES, which may also have been written with Java serialization */
+    public static Branch fromBytes (byte[] bytes) {
+        if (Codec.isSerialized(bytes)) {
+            return Codec.deserialize(bytes, Branch.class);
+        }
+        Codec.Reader in = Codec.reader(bytes, Codec.BRANCHES);
+        Branch branches = new Branch();
+        branches.current_branch = in.readString();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            String name = in.readString();
+            branches.all_branches.put(name, in.readHash());
+        }
+        return branches;
+    }
+
     /** Removes the given branch from the all_branches list */
     public void removeBranch (String branch_name) {
         this.all_branches.remove(branch_name);
@@ -0,0 +1,187 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Updates the working directory from the files tracked by one commit to the files tracked by another.
+ *  The engine first computes a three-way difference between the two sets of tracked files and the files
+ *  in the working directory, so that only the files which actually differ from the target are touched.
+ *  The files are then written by a pool of worker threads. Every file is written to a temporary file next
+ *  to it, checked against the hash of its blob, and renamed into place, so a file in the working
+ *  directory is never left half written.
+ *
+ *  @author Rishikesh S
+ */
+public class CheckoutEngine {
+
+    /** Default number of worker threads writing files */
+    private static final int DEFAULT_THREADS = 8;
+
+    /** Minimum number of files to write before progress is reported */
+    private static final int PROGRESS_THRESHOLD = 100;
+
+    /** The store the blobs are read from */
+    private final ObjectStore objects;
+
+    /** The working directory */
+    private final File work_dir;
+
+    /** Number of worker threads writing files */
+    private final int threads;
+
+    /** The files to be deleted from the working directory */
+    private final TreeSet<String> deletions = new TreeSet<>();
+
+    /** The files to be written to the working directory and the hashes of their blobs */
+    private final TreeMap<String, String> writes = new TreeMap<>();
+
+    /** The untracked files which would be overwritten */
+    private final TreeSet<String> untracked_in_the_way = new TreeSet<>();
+
+    /** Constructor. The number of worker threads is given by the checkout.threads setting */
+    public CheckoutEngine (ObjectStore objects, File work_dir) {
+        this.objects = objects;
+        this.work_dir = work_dir;
+        this.threads = Math.max(1, Config.getInt("checkout.threads", DEFAULT_THREADS));
+    }
+
+    /** Plans the changes needed to go from the CURRENT tracked files to the TARGET tracked files, given
+     *  the WORKING files (the hashes of the files currently in the working directory). All three map file
+     *  names to hashes. A file is only written if the working directory does not already have the target
+     *  version, and only deleted if it is tracked by the current commit but not by the target. Untracked
+     *  files which would be overwritten are recorded instead (see getUntrackedInTheWay).
+     */
+    public void diff (Map<String, String> current, Map<String, String> target, Map<String, String> working) {
+        for (String file_name : current.keySet()) {
+            if (!target.containsKey(file_name) && working.containsKey(file_name)) {
+                this.deletions.add(file_name);
+            }
+        }
+        for (Map.Entry<String, String> entry : target.entrySet()) {
+            String file_name = entry.getKey();
+            String working_hash = working.get(file_name);
+            if (Objects.equals(working_hash, entry.getValue())) {
+                continue;
+            }
+            if (working_hash != null && !current.containsKey(file_name)) {
+                this.untracked_in_the_way.add(file_name);
+            }
+            this.writes.put(file_name, entry.getValue());
+        }
+    }
+
+    /** Plans the rest of an interrupted update, which was to delete DELETIONS and write WRITES (mapping file
+     *  names to hashes). WORKING maps the files currently in the working directory to their hashes. The
+     *  files which already have the target version are not written again, and the temporary files the
+     *  interrupted update may have left behind are deleted.
+     */
+    public void resume (Set<String> deletions, Map<String, String> writes, Map<String, String> working) {
+        for (String file_name : deletions) {
+            if (working.containsKey(file_name)) {
+                this.deletions.add(file_name);
+            }
+        }
+        for (Map.Entry<String, String> entry : writes.entrySet()) {
+            File dest = Utils.join(this.work_dir, entry.getKey());
+            new File(dest.getParentFile(), "." + dest.getName() + ".gitlet-tmp").delete();
+            if (!Objects.equals(working.get(entry.getKey()), entry.getValue())) {
+                this.writes.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** Returns the untracked files of the working directory which the checkout would overwrite */
+    public TreeSet<String> getUntrackedInTheWay () {
+        return this.untracked_in_the_way;
+    }
+
+    /** Returns the files which will be deleted */
+    public TreeSet<String> getDeletions () {
+        return this.deletions;
+    }
+
+    /** Returns the files which will be written, along with the hashes of their blobs */
+    public TreeMap<String, String> getWrites () {
+        return this.writes;
+    }
+
+    /** Applies the planned changes to the working directory. Returns the metadata of every file which
+     *  was written, so that the caller can record it in the staging area.
+     */
+    public Map<String, FileStat> apply () {
+        for (String file_name : this.deletions) {
+            File file = Utils.join(this.work_dir, file_name);
+            file.delete();
+            Utils.deleteEmptyParents(file, this.work_dir);
+        }
+
+        final int total = this.writes.size();
+        final boolean report_progress = total >= PROGRESS_THRESHOLD && System.console() != null;
+        final AtomicInteger done = new AtomicInteger();
+        List<Callable<FileStat>> tasks = new ArrayList<>();
+        for (final Map.Entry<String, String> entry : this.writes.entrySet()) {
+            tasks.add(() -> {
+                FileStat stat = this.writeFile(entry.getKey(), entry.getValue());
+                int finished = done.incrementAndGet();
+                if (report_progress && (finished % 100 == 0 || finished == total)) {
+                    System.err.printf("\rChecking out files: %d%% (%d/%d)", 100 * finished / total, finished, total);
+                    if (finished == total) {
+                        System.err.println();
+                    }
+                }
+                return stat;
+            });
+        }
+        List<FileStat> stats = Parallel.run(tasks, this.threads);
+
+        TreeMap<String, FileStat> written = new TreeMap<>();
+        int i = 0;
+        for (String file_name : this.writes.keySet()) {
+            if (stats.get(i) != null) {
+                written.put(file_name, stats.get(i));
+            }
+            i += 1;
+        }
+        return written;
+    }
+
+    /** Writes the given blob to the given file in the working directory, and returns the metadata of
+     *  the written file. The blob is written to a temporary file, whose hash is checked before it is
+     *  renamed over the file.
+     */
+    private FileStat writeFile (String file_name, String file_hash) {
+        File dest = Utils.join(this.work_dir, file_name);
+        File parent = dest.getParentFile();
+        parent.mkdirs();
+        File temp = new File(parent, "." + dest.getName() + ".gitlet-tmp");
+        try {
+            this.objects.copyBlobTo(file_hash, temp);
+        } catch (GitletException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!Utils.sha1(temp).equals(file_hash)) {
+            temp.delete();
+            throw Utils.error("Blob %s of %s is corrupt", file_hash, file_name);
+        }
+        try {
+            Files.move(temp.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            throw Utils.error("Error when writing %s", file_name);
+        }
+        return FileStat.of(dest, file_hash);
+    }
+}
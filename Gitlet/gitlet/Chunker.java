@@ -0,0 +1,117 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/** Splits files into chunks at boundaries defined by their contents (FastCDC).
+ *  A gear hash is rolled over the bytes of the file, and a chunk ends where the top bits of the hash are
+ *  all zero. As the hash only depends on the last 64 bytes, the boundaries move along with the contents :
+ *  inserting or removing bytes only changes the chunks around the change, and the other chunks of two
+ *  versions of a file are identical.
+ *
+ *  Chunks are between a quarter and four times the average size. Boundaries are harder to find before the
+ *  average size and easier after it (normalized chunking), so most chunks are close to the average.
+ *
+ *  @author Rishikesh S
+ */
+public class Chunker {
+
+    /** Receives the chunks of a file, in order */
+    public interface ChunkConsumer {
+        /** Called with a chunk of LENGTH bytes starting at OFFSET in BUFFER. The buffer is reused for the
+         *  next chunks, so its contents must be copied out if they are kept.
+         */
+        void accept (byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /** Random values of the bytes for the gear hash. The seed is fixed, as the boundaries (and so the
+     *  chunks stored in repositories) must not change from one run to the next.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** Minimum, average and maximum size of the chunks */
+    private final int min_size;
+    private final int average_size;
+    private final int max_size;
+
+    /** Masks of the hash bits which must be zero at a boundary, before and after the average size */
+    private final long small_mask;
+    private final long large_mask;
+
+    /** Constructor. AVERAGE_SIZE is rounded down to a power of two. */
+    public Chunker (int average_size) {
+        int bits = 31 - Integer.numberOfLeadingZeros(Math.max(256, average_size));
+        this.average_size = 1 << bits;
+        this.min_size = this.average_size / 4;
+        this.max_size = this.average_size * 4;
+        this.small_mask = -1L << (64 - (bits + 1));
+        this.large_mask = -1L << (64 - (bits - 1));
+    }
+
+    /** Returns the maximum size of the chunks */
+    public int getMaxSize () {
+        return this.max_size;
+    }
+
+    /** Reads IN to the end and passes each of its chunks to CONSUMER */
+    public void split (InputStream in, ChunkConsumer consumer) throws IOException {
+        byte[] buffer = new byte[2 * this.max_size];
+        int start = 0;
+        int end = 0;
+        boolean eof = false;
+        while (true) {
+            /* Refilling the buffer whenever less than a whole chunk is left, unless the file is read */
+            if (!eof && end - start < this.max_size) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+                while (end < buffer.length) {
+                    int read = in.read(buffer, end, buffer.length - end);
+                    if (read == -1) {
+                        eof = true;
+                        break;
+                    }
+                    end += read;
+                }
+            }
+            if (start == end) {
+                return;
+            }
+            int length = this.cut(buffer, start, end - start);
+            consumer.accept(buffer, start, length);
+            start += length;
+        }
+    }
+
+    /** Returns the length of the chunk starting at OFFSET in BUFFER, which has LENGTH bytes left */
+    private int cut (byte[] buffer, int offset, int length) {
+        if (length <= this.min_size) {
+            return length;
+        }
+        int end = Math.min(length, this.max_size);
+        int normal = Math.min(end, this.average_size);
+        long hash = 0;
+        int i = this.min_size;
+        for (; i < normal; i += 1) {
+            hash = (hash << 1) + GEAR[buffer[offset + i] & 0xff];
+            if ((hash & this.small_mask) == 0) {
+                return i;
+            }
+        }
+        for (; i < end; i += 1) {
+            hash = (hash << 1) + GEAR[buffer[offset + i] & 0xff];
+            if ((hash & this.large_mask) == 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of Chunker : chunks join back into the file, their sizes stay within the bounds, and the
+ *  boundaries only depend on the contents, so an edit only changes the chunks around it.
+ *
+ *  @author Rishikesh S
+ */
+public class ChunkerTest {
+
+    /** Average size of the chunks in the tests */
+    private static final int AVERAGE_SIZE = 4096;
+
+    /** Returns SIZE random bytes */
+    private static byte[] randomBytes (Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Returns the chunks CHUNKER splits the contents read from IN into */
+    private static List<byte[]> split (Chunker chunker, InputStream in) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        chunker.split(in, (buffer, offset, length) -> chunks.add(Arrays.copyOfRange(buffer, offset,
+                offset + length)));
+        return chunks;
+    }
+
+    /** Returns the chunks CHUNKER splits CONTENTS into */
+    private static List<byte[]> split (Chunker chunker, byte[] contents) throws IOException {
+        return split(chunker, new ByteArrayInputStream(contents));
+    }
+
+    /** Returns the hashes of CHUNKS */
+    private static HashSet<String> hashes (List<byte[]> chunks) {
+        HashSet<String> hashes = new HashSet<>();
+        for (byte[] chunk : chunks) {
+            hashes.add(Utils.sha1((Object) chunk));
+        }
+        return hashes;
+    }
+
+    /** Asserts that CHUNKS join into CONTENTS */
+    private static void assertJoin (byte[] contents, List<byte[]> chunks) {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            joined.writeBytes(chunk);
+        }
+        assertArrayEquals(contents, joined.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip () throws IOException {
+        byte[] contents = randomBytes(new Random(1), 1000000);
+        List<byte[]> chunks = split(new Chunker(AVERAGE_SIZE), contents);
+        assertJoin(contents, chunks);
+        assertTrue("Too few chunks", chunks.size() > contents.length / (AVERAGE_SIZE * 4));
+    }
+
+    @Test
+    public void testChunkSizes () throws IOException {
+        Chunker chunker = new Chunker(AVERAGE_SIZE);
+        List<byte[]> chunks = split(chunker, randomBytes(new Random(2), 1000000));
+        /* Only the last chunk may be smaller than the minimum */
+        for (int i = 0; i < chunks.size(); i += 1) {
+            int length = chunks.get(i).length;
+            assertTrue("Chunk larger than the maximum", length <= chunker.getMaxSize());
+            assertTrue("Chunk smaller than the minimum", length >= AVERAGE_SIZE / 4 || i == chunks.size() - 1);
+            assertTrue("Empty chunk", length > 0);
+        }
+    }
+
+    @Test
+    public void testRepeatedContents () throws IOException {
+        /* No boundary is ever found in constant contents, so every chunk has the maximum size */
+        Chunker chunker = new Chunker(AVERAGE_SIZE);
+        byte[] contents = new byte[chunker.getMaxSize() * 3 + 100];
+        List<byte[]> chunks = split(chunker, contents);
+        assertJoin(contents, chunks);
+        assertEquals(4, chunks.size());
+        assertEquals(1, hashes(chunks.subList(0, 3)).size());
+    }
+
+    @Test
+    public void testAverageSizeRounded () throws IOException {
+        byte[] contents = randomBytes(new Random(3), 200000);
+        assertEquals(new Chunker(4096).getMaxSize(), new Chunker(5000).getMaxSize());
+        assertEquals(hashes(split(new Chunker(4096), contents)), hashes(split(new Chunker(5000), contents)));
+        /* Sizes below the minimum average are raised to it */
+        assertEquals(1024, new Chunker(10).getMaxSize());
+    }
+
+    @Test
+    public void testDeterministic () throws IOException {
+        byte[] contents = randomBytes(new Random(4), 300000);
+        List<byte[]> first = split(new Chunker(AVERAGE_SIZE), contents);
+        List<byte[]> second = split(new Chunker(AVERAGE_SIZE), contents);
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i += 1) {
+            assertArrayEquals(first.get(i), second.get(i));
+        }
+    }
+
+    @Test
+    public void testInsertionIsLocal () throws IOException {
+        Random random = new Random(5);
+        byte[] contents = randomBytes(random, 1000000);
+        ByteArrayOutputStream edited = new ByteArrayOutputStream();
+        edited.write(contents, 0, 500000);
+        edited.writeBytes(randomBytes(random, 100));
+        edited.write(contents, 500000, contents.length - 500000);
+        Chunker chunker = new Chunker(AVERAGE_SIZE);
+        HashSet<String> before = hashes(split(chunker, contents));
+        HashSet<String> after = hashes(split(chunker, edited.toByteArray()));
+        HashSet<String> changed = new HashSet<>(after);
+        changed.removeAll(before);
+        assertTrue("Insertion changed " + changed.size() + " chunks", changed.size() <= 3);
+    }
+
+    @Test
+    public void testEmptyAndSmallInputs () throws IOException {
+        Chunker chunker = new Chunker(AVERAGE_SIZE);
+        assertTrue(split(chunker, new byte[0]).isEmpty());
+        byte[] small = randomBytes(new Random(6), 10);
+        List<byte[]> chunks = split(chunker, small);
+        assertEquals(1, chunks.size());
+        assertArrayEquals(small, chunks.get(0));
+    }
+
+    @Test
+    public void testShortReads () throws IOException {
+        byte[] contents = randomBytes(new Random(7), 300000);
+        Random random = new Random(8);
+        /* A stream which returns at most a few bytes per read, as pipes and sockets may */
+        InputStream trickle = new ByteArrayInputStream(contents) {
+            @Override
+            public synchronized int read (byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1 + random.nextInt(100)));
+            }
+        };
+        Chunker chunker = new Chunker(AVERAGE_SIZE);
+        List<byte[]> expected = split(chunker, contents);
+        List<byte[]> actual = split(chunker, trickle);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i += 1) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The binary format in which commits, trees, the branches, the staging area and the journal are stored.
+ *  An encoded object is made of :
+ *  <ol>
+ *  <li> A header : the magic bytes 'G' 'L', the kind of object and the version of the format. </li>
+ *  <li> A string table : the number of distinct strings, then each string as its length in bytes followed
+ *       by its UTF-8 bytes. Strings are listed in the order in which they were first written. </li>
+ *  <li> The fields of the object, in a fixed order. Strings are written as their position in the string
+ *       table (plus one, so that 0 is null), integers as variable length integers (7 bits per byte,
+ *       least significant first, signed integers zig-zag encoded) and hashes as their 20 raw bytes. </li>
+ *  </ol>
+ *  Objects are decoded by hand-written decode methods, without reflection. The encoding of an object only
+ *  depends on its fields, so the hashes of commits and trees, which are computed from their encodings, are
+ *  the same on every JVM.
+ *
+ *  Data written with Java serialization (which starts with the bytes 0xACED) is still read, so
+ *  repositories created before this format keep working (see deserialize).
+ *
+ *  @author Rishikesh S
+ */
+class Codec {
+
+    /** Kinds of encoded objects */
+    static final byte COMMIT = 'C';
+    static final byte TREE = 'T';
+    static final byte BRANCHES = 'B';
+    static final byte STAGING_AREA = 'S';
+    static final byte JOURNAL = 'J';
+
+    /** Magic bytes at the start of an encoded object */
+    private static final byte[] MAGIC = {'G', 'L'};
+
+    /** Version of the format */
+    private static final int VERSION = 1;
+
+    /** Size of the header : magic bytes, kind and version */
+    private static final int HEADER_SIZE = MAGIC.length + 2;
+
+    /** The classes standing in for the versions of the commits and the staging area which repositories
+     *  created before this format were serialized with, keyed by the name and serialVersionUID of the
+     *  version. Each has the same fields as the version it stands for, and resolves to an object of the
+     *  current class when read.
+     */
+    private static final Map<String, Class<?>> LEGACY_CLASSES = Map.of(
+            "gitlet.Commit 5097849497524643389", Commit.Version1.class,
+            "gitlet.StagingArea -5891076849520087880", StagingArea.Version1.class);
+
+    /** Returns true if BYTES were written with Java serialization rather than with this format */
+    static boolean isSerialized (byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED;
+    }
+
+    /** Returns the object of class EXPECTED_CLASS written with Java serialization in BYTES. The commits and
+     *  staging areas of repositories created before this format were serialized by versions of their classes
+     *  with other fields : the descriptor of such a version is swapped for the one of the class standing in
+     *  for it (see LEGACY_CLASSES) before the fields are read.
+     */
+    static <T extends Serializable> T deserialize (byte[] bytes, Class<T> expected_class) {
+        try (ObjectInputStream in = new LegacyInputStream(bytes)) {
+            return expected_class.cast(in.readObject());
+        } catch (IOException | ClassCastException | ClassNotFoundException e) {
+            throw Utils.error("Corrupt object : %s", e.getMessage());
+        }
+    }
+
+    /** Reads serialized objects, swapping the descriptors of the earlier versions of the classes */
+    private static class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream (byte[] bytes) throws IOException {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor () throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            Class<?> legacy = LEGACY_CLASSES.get(descriptor.getName() + " " + descriptor.getSerialVersionUID());
+            return legacy == null ? descriptor : ObjectStreamClass.lookup(legacy);
+        }
+    }
+
+    /** Returns a reader of the fields of the object of kind KIND encoded in BYTES. Throws an error if
+     *  BYTES are not an object of that kind in a supported version of the format.
+     */
+    static Reader reader (byte[] bytes, byte kind) {
+        if (bytes.length < HEADER_SIZE || bytes[0] != MAGIC[0] || bytes[1] != MAGIC[1] || bytes[2] != kind) {
+            throw Utils.error("Corrupt object");
+        }
+        if (bytes[3] > VERSION) {
+            throw Utils.error("Object written in an unsupported format version %d", bytes[3]);
+        }
+        return new Reader(bytes);
+    }
+
+    /** Writes the fields of an object. The fields are buffered until toBytes is called, as the string
+     *  table comes before them.
+     */
+    static class Writer {
+        /** Kind of the object */
+        private final byte kind;
+
+        /** The fields written so far */
+        private final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+
+        /** The strings written so far, in the order in which they were first written */
+        private final List<String> strings = new ArrayList<>();
+
+        /** Position of every string in the string table */
+        private final HashMap<String, Integer> string_positions = new HashMap<>();
+
+        Writer (byte kind) {
+            this.kind = kind;
+        }
+
+        /** Writes a non-negative integer */
+        void writeVarint (long value) {
+            putVarint(this.fields, value);
+        }
+
+        /** Writes a signed integer */
+        void writeSignedVarint (long value) {
+            putVarint(this.fields, (value << 1) ^ (value >> 63));
+        }
+
+        /** Writes a string, which may be null */
+        void writeString (String value) {
+            if (value == null) {
+                this.writeVarint(0);
+                return;
+            }
+            Integer position = this.string_positions.get(value);
+            if (position == null) {
+                position = this.strings.size();
+                this.strings.add(value);
+                this.string_positions.put(value, position);
+            }
+            this.writeVarint(position + 1);
+        }
+
+        /** Writes a hash, which may be null */
+        void writeHash (String hash) {
+            if (hash == null) {
+                this.fields.write(0);
+                return;
+            }
+            this.fields.write(1);
+            this.fields.writeBytes(Utils.hashToBytes(hash));
+        }
+
+        /** Returns the encoded object : header, string table and fields */
+        byte[] toBytes () {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + 16 * this.strings.size()
+                    + this.fields.size());
+            out.writeBytes(MAGIC);
+            out.write(this.kind);
+            out.write(VERSION);
+            putVarint(out, this.strings.size());
+            for (String s : this.strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                putVarint(out, bytes.length);
+                out.writeBytes(bytes);
+            }
+            out.writeBytes(this.fields.toByteArray());
+            return out.toByteArray();
+        }
+
+        /** Writes VALUE to OUT as a variable length integer */
+        private static void putVarint (ByteArrayOutputStream out, long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    /** Reads the fields of an encoded object, in the order in which they were written */
+    static class Reader {
+        /** The encoded object */
+        private final byte[] bytes;
+
+        /** Position of the next byte to read */
+        private int position;
+
+        /** The string table */
+        private final String[] strings;
+
+        Reader (byte[] bytes) {
+            this.bytes = bytes;
+            this.position = HEADER_SIZE;
+            int count = this.readInt();
+            /* Every string takes at least a byte, so a larger count is corrupt rather than allocated */
+            if (count > bytes.length - this.position) {
+                throw Utils.error("Corrupt object");
+            }
+            this.strings = new String[count];
+            for (int i = 0; i < this.strings.length; i += 1) {
+                int length = this.readInt();
+                if (length > bytes.length - this.position) {
+                    throw Utils.error("Corrupt object");
+                }
+                this.strings[i] = new String(bytes, this.position, length, StandardCharsets.UTF_8);
+                this.position += length;
+            }
+        }
+
+        /** Reads a non-negative integer */
+        long readVarint () {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (this.position >= this.bytes.length || shift > 63) {
+                    throw Utils.error("Corrupt object");
+                }
+                byte b = this.bytes[this.position];
+                this.position += 1;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        /** Reads a non-negative integer which fits in an int, like a size */
+        int readInt () {
+            long value = this.readVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw Utils.error("Corrupt object");
+            }
+            return (int) value;
+        }
+
+        /** Reads a signed integer */
+        long readSignedVarint () {
+            long value = this.readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /** Reads a string, which may be null */
+        String readString () {
+            int position = this.readInt();
+            if (position > this.strings.length) {
+                throw Utils.error("Corrupt object");
+            }
+            return position == 0 ? null : this.strings[position - 1];
+        }
+
+        /** Reads a hash, which may be null */
+        String readHash () {
+            if (this.position >= this.bytes.length) {
+                throw Utils.error("Corrupt object");
+            }
+            byte present = this.bytes[this.position];
+            this.position += 1;
+            if (present == 0) {
+                return null;
+            }
+            if (this.position + Utils.UID_BYTES > this.bytes.length) {
+                throw Utils.error("Corrupt object");
+            }
+            String hash = Utils.bytesToHash(this.bytes, this.position);
+            this.position += Utils.UID_BYTES;
+            return hash;
+        }
+    }
+}
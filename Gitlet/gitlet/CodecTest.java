@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/** Tests of Codec and of the encodings of the objects : fields and objects are read back as they were
+ *  written, objects written with Java serialization are still read, and corrupt encodings are rejected
+ *  with an error.
+ *
+ *  @author Rishikesh S
+ */
+public class CodecTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Asserts that reading BYTES as an object of the kind KIND fails with an error */
+    private static void assertCorrupt (byte[] bytes, byte kind) {
+        try {
+            Codec.Reader in = Codec.reader(bytes, kind);
+            /* Reading past the fields which were written */
+            for (int i = 0; i < 100; i += 1) {
+                in.readHash();
+            }
+            fail("Corrupt object was read");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testFieldsRoundTrip () {
+        long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE};
+        long[] signed_values = {0, -1, 1, -64, 64, Long.MIN_VALUE, Long.MAX_VALUE};
+        String hash = Utils.sha1("contents");
+        Codec.Writer out = new Codec.Writer(Codec.TREE);
+        for (int i = 0; i < values.length; i += 1) {
+            out.writeVarint(values[i]);
+            out.writeSignedVarint(signed_values[i]);
+        }
+        out.writeString("a file");
+        out.writeString(null);
+        out.writeString("");
+        out.writeString("fichier \u00e9t\u00e9 \u6587\u4ef6");
+        out.writeString("a file");
+        out.writeHash(hash);
+        out.writeHash(null);
+        byte[] bytes = out.toBytes();
+
+        Codec.Reader in = Codec.reader(bytes, Codec.TREE);
+        for (int i = 0; i < values.length; i += 1) {
+            assertEquals(values[i], in.readVarint());
+            assertEquals(signed_values[i], in.readSignedVarint());
+        }
+        assertEquals("a file", in.readString());
+        assertNull(in.readString());
+        assertEquals("", in.readString());
+        assertEquals("fichier \u00e9t\u00e9 \u6587\u4ef6", in.readString());
+        assertEquals("a file", in.readString());
+        assertEquals(hash, in.readHash());
+        assertNull(in.readHash());
+    }
+
+    @Test
+    public void testRepeatedStringsStoredOnce () {
+        Codec.Writer once = new Codec.Writer(Codec.TREE);
+        once.writeString("a rather long file name");
+        Codec.Writer twice = new Codec.Writer(Codec.TREE);
+        twice.writeString("a rather long file name");
+        twice.writeString("a rather long file name");
+        assertEquals(once.toBytes().length + 1, twice.toBytes().length);
+    }
+
+    @Test
+    public void testCommitRoundTrip () {
+        Commit initial = new Commit("initial commit", null, null);
+        Commit merge = new Commit("Merged other into master.", initial.getHash(), Utils.sha1("other"),
+                Utils.sha1("tree"));
+        for (Commit commit : new Commit[] {initial, merge}) {
+            Commit read = Commit.fromBytes(commit.toBytes());
+            assertEquals(commit.getMessage(), read.getMessage());
+            assertEquals(commit.getTime(), read.getTime());
+            assertEquals(commit.getTimestamp(), read.getTimestamp());
+            assertEquals(commit.getParent(), read.getParent());
+            assertEquals(commit.getSecondParent(), read.getSecondParent());
+            assertEquals(commit.getTree(), read.getTree());
+            assertEquals(commit.getHash(), read.getHash());
+            assertFalse(read.isLegacy());
+        }
+        /* The hash only depends on the fields */
+        assertEquals(initial.getHash(), new Commit("initial commit", null, null).getHash());
+    }
+
+    @Test
+    public void testSerializedCommit () {
+        Commit commit = new Commit("a message", Utils.sha1("parent"), Utils.sha1("tree"));
+        Commit read = Commit.fromBytes(Utils.serialize(commit));
+        assertEquals(commit.getHash(), read.getHash());
+        assertEquals(commit.getTimestamp(), read.getTimestamp());
+    }
+
+    @Test
+    public void testTreeRoundTrip () {
+        Codec.Writer out = new Codec.Writer(Codec.TREE);
+        out.writeVarint(2);
+        out.writeString("a.txt");
+        out.writeHash(Utils.sha1("a"));
+        out.writeString("b.txt");
+        out.writeHash(Utils.sha1("b"));
+        out.writeVarint(1);
+        out.writeString("dir");
+        out.writeHash(Utils.sha1("dir"));
+        byte[] bytes = out.toBytes();
+        Tree tree = Tree.fromBytes(bytes);
+        assertEquals(Arrays.asList(Utils.sha1("a"), Utils.sha1("b")), tree.getBlobHashes().stream().toList());
+        assertEquals(Arrays.asList(Utils.sha1("dir")), tree.getSubtreeHashes().stream().toList());
+        assertArrayEquals(bytes, tree.toBytes());
+        assertTrue(Tree.fromBytes(new Tree().toBytes()).isEmpty());
+    }
+
+    @Test
+    public void testStagingAreaRoundTrip () throws IOException {
+        File file = this.folder.newFile("a.txt");
+        Utils.writeContents(file, "contents");
+        StagingArea staging_area = new StagingArea();
+        staging_area.stageCopiedFile("a.txt", Utils.sha1("contents"));
+        staging_area.stageCopiedFile("dir/b.txt", Utils.sha1("b"));
+        staging_area.stageForRemoval("c.txt");
+        staging_area.putStat("a.txt", FileStat.of(file, Utils.sha1("contents")));
+        byte[] bytes = staging_area.toBytes();
+        StagingArea read = StagingArea.fromBytes(bytes);
+        assertEquals(staging_area.getStagedFiles(), read.getStagedFiles());
+        assertEquals(staging_area.getRemovalStagedFiles(), read.getRemovalStagedFiles());
+        assertEquals(Utils.sha1("contents"), read.getStat("a.txt").getHash());
+        assertArrayEquals(bytes, read.toBytes());
+        assertArrayEquals(bytes, StagingArea.fromBytes(Utils.serialize(staging_area)).toBytes());
+    }
+
+    @Test
+    public void testBranchesAndJournalRoundTrip () {
+        Branch branches = new Branch();
+        branches.addBranch("master", Utils.sha1("master"));
+        branches.addBranch("other", Utils.sha1("other"));
+        branches.setCurrentBranch("other");
+        Branch read_branches = Branch.fromBytes(branches.toBytes());
+        assertEquals("other", read_branches.getCurrentBranch());
+        assertEquals(branches.getAllBranches(), read_branches.getAllBranches());
+        assertEquals(Utils.sha1("master"), read_branches.branchHead("master"));
+
+        TreeMap<String, String> writes = new TreeMap<>();
+        writes.put("a.txt", Utils.sha1("a"));
+        Journal journal = new Journal(Utils.sha1("head"), "master", new TreeSet<>(Arrays.asList("b.txt")),
+                writes);
+        for (byte[] bytes : new byte[][] {journal.toBytes(), Utils.serialize(journal)}) {
+            Journal read = Journal.fromBytes(bytes);
+            assertEquals(journal.getHead(), read.getHead());
+            assertEquals(journal.getBranch(), read.getBranch());
+            assertEquals(journal.getDeletions(), read.getDeletions());
+            assertEquals(journal.getWrites(), read.getWrites());
+        }
+    }
+
+    @Test
+    public void testWrongKindAndVersion () {
+        byte[] bytes = new Commit("initial commit", null, null).toBytes();
+        assertCorrupt(bytes, Codec.TREE);
+        try {
+            Tree.fromBytes(bytes);
+            fail("Commit was read as a tree");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+        byte[] newer = bytes.clone();
+        newer[3] += 1;
+        assertCorrupt(newer, Codec.COMMIT);
+        byte[] bad_magic = bytes.clone();
+        bad_magic[0] = 'X';
+        assertCorrupt(bad_magic, Codec.COMMIT);
+        assertCorrupt(new byte[0], Codec.COMMIT);
+    }
+
+    @Test
+    public void testTruncated () {
+        byte[] bytes = new Commit("a message", Utils.sha1("parent"), Utils.sha1("tree")).toBytes();
+        for (int length = 0; length < bytes.length; length += 1) {
+            try {
+                Commit.fromBytes(Arrays.copyOf(bytes, length));
+                fail("Truncated commit was read");
+            } catch (GitletException e) {
+                /* Expected */
+            }
+        }
+    }
+
+    @Test
+    public void testBadStringTable () {
+        /* A string position past the end of the table */
+        Codec.Writer out = new Codec.Writer(Codec.TREE);
+        out.writeVarint(5);
+        assertEquals(5, Codec.reader(out.toBytes(), Codec.TREE).readVarint());
+        try {
+            Codec.reader(out.toBytes(), Codec.TREE).readString();
+            fail("String position out of the table was read");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+        /* A table of more strings, and a string longer, than the object holds */
+        assertCorrupt(new byte[] {'G', 'L', Codec.TREE, 1, 100, 1, 'a'}, Codec.TREE);
+        assertCorrupt(new byte[] {'G', 'L', Codec.TREE, 1, 1, 100, 'a'}, Codec.TREE);
+        assertCorrupt(new byte[] {'G', 'L', Codec.TREE, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            0x07}, Codec.TREE);
+        /* A varint which never ends */
+        assertCorrupt(new byte[] {'G', 'L', Codec.TREE, 1, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+            (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1},
+            Codec.TREE);
+    }
+
+    @Test
+    public void testRandomCorruption () {
+        Random random = new Random(1);
+        Commit commit = new Commit("a message", Utils.sha1("parent"), Utils.sha1("other"), Utils.sha1("tree"));
+        byte[] bytes = commit.toBytes();
+        for (int i = 0; i < 2000; i += 1) {
+            byte[] corrupt = bytes.clone();
+            corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            try {
+                Commit.fromBytes(corrupt);
+            } catch (GitletException e) {
+                /* Either the commit is still read or it is rejected, but nothing else is thrown */
+            }
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package gitlet;
 
-import java.io.IOException;
 import java.io.Serializable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Formatter;
 import java.util.Set;
 import java.util.TreeMap;
-import java.io.File;
 
 /** Represents a gitlet commit object.
  *
@@ -15,47 +15,68 @@ import java.io.File;
  */
 public class Commit implements Serializable {
 
+    /** Commits are encoded with Codec. Those serialized by the first version of the class are read
+     *  through Version1 (see Codec).
+     */
+    private static final long serialVersionUID = 6727688030377032860L;
+
     /** Timestamp of the commit */
     private String timestamp;
 
+    /** Time of the commit in milliseconds since the Unix Epoch */
+    private long time;
+
     /** The message of this Commit. */
     private String message;
 
     /** Parent of this commit. We store the SHA1 hash of the parent commit here*/
     private String parent;
 
-    /** The blobs referred by this commit */
-    private TreeMap<String, String> referenced_blobs;
+    /** Second parent of a merge commit : the head of the branch which was merged in. Null for other commits */
+    private String second_parent;
+
+    /** Hash of the tree of the working directory (see Tree), through which the tracked blobs are referred */
+    private String tree;
 
+    /** The blobs referred by this commit, flattened from the tree on first use. Not saved with the commit */
+    private transient TreeMap<String, String> referenced_blobs;
 
-    /** Constructor */
-    public Commit (String message, String parent, TreeMap<String, String> tracked_files) {
+    /** True for the commits made before trees, which listed their blobs in referenced_blobs instead */
+    private transient boolean legacy;
+
+    /** Constructor. TREE is the hash of the (saved) tree of the files tracked by the commit */
+    public Commit (String message, String parent, String tree) {
+        this(message, parent, null, tree);
+    }
+
+    /** Constructor for merge commits, which have a SECOND_PARENT */
+    public Commit (String message, String parent, String second_parent, String tree) {
 
         this.message = message;
         this.parent = parent;
+        this.second_parent = second_parent;
+        this.tree = tree;
 
         /* If the parent is null, that is, initial commit */
         if (parent == null) {
-            Date unix_epoch = new Date(0);
-            Formatter formatter = new Formatter();
-            formatter.format("%1$ta %1$tb %1$td %1$tT %1$tY %1$tz", unix_epoch);
-            String formatted_time = formatter.toString();
-            formatter.close();
-            this.timestamp = formatted_time;
-            /* Initial commit does not track any blobs */
-            this.referenced_blobs = new TreeMap<>();
+            this.time = 0;
+            this.timestamp = formatTimestamp(this.time);
         }
         else {
-            Date current_date = new Date();
-            Formatter formatter = new Formatter();
-                formatter.format("%1$ta %1$tb %1$td %1$tT %1$tY %1$tz", current_date);
-            String formatted_time = formatter.toString();
-            formatter.close();
-            this.timestamp = formatted_time;
-            this.referenced_blobs = tracked_files;
+            this.time = new Date().getTime();
+            this.timestamp = formatTimestamp(this.time);
         }
     }
 
+    /** Formats the given time (in milliseconds since the Unix Epoch) the way commit timestamps are displayed */
+    public static String formatTimestamp (long time) {
+        Formatter formatter = new Formatter();
+        formatter.format("%1$ta %1$tb %1$td %1$tT %1$tY %1$tz", new Date(time));
+        String formatted_time = formatter.toString();
+        formatter.close();
+        return formatted_time;
+    }
+
     /** Getter methods for the instance variables */
     public String getMessage () {
         return this.message;
@@ -65,58 +86,145 @@ public class Commit implements Serializable {
         return this.timestamp;
     }
 
+    public long getTime () {
+        return this.time;
+    }
+
     public String getParent () {
         return this.parent;
     }
 
+    public String getSecondParent () {
+        return this.second_parent;
+    }
+
+    /** Returns the hash of the tree of the commit. The tree of a commit made before trees is saved on first
+     *  use, from the blobs it lists.
+     */
+    public String getTree () {
+        if (this.legacy && this.tree == null && !this.referenced_blobs.isEmpty()) {
+            this.tree = Tree.update(null, this.referenced_blobs);
+        }
+        return this.tree;
+    }
+
+    /** Returns true if the commit was made before trees, so that it lists its blobs (see getReferencedBlobs)
+     *  and its tree is not in the store until getTree saves it
+     */
+    public boolean isLegacy () {
+        return this.legacy;
+    }
+
     /** Saves the Commit object to disk and returns the Sha1 Hash of the saved commit obj */
     public String saveCommit () {
         String commit_hash = this.getHash();
-        File commit_file = Utils.join(Repository.COMMIT_DIR, commit_hash);
-        try {
-            commit_file.createNewFile();
-        } catch (IOException e) {
-            System.out.println("Error when creating commit file");
-            e.printStackTrace();
+        /* An identical commit may already have been saved, in which case it is already in the commit graph */
+        boolean is_new = Repository.OBJECTS.writeCommit(commit_hash, this);
+        /* Recording the commit in the commit graph so that log does not have to read it back */
+        if (is_new) {
+            Repository.COMMIT_GRAPH.append(commit_hash, this);
         }
-        Utils.writeObject(commit_file, this);
         return commit_hash;
     }
 
-    /** Returns the Sha1 hash of the commit object */
+    /** Returns the Sha1 hash of the commit object, computed from its encoding */
     public String getHash () {
-        byte[] serialized_obj = Utils.serialize(this);
-        return Utils.sha1(serialized_obj);
+        return Utils.sha1(this.toBytes());
     }
 
-    /** Returns the hash of the tracked file */
+    /** Returns the encoding of the commit (see Codec). The timestamp is not encoded, as it is formatted
+     *  from the time
+     */
+    public byte[] toBytes () {
+        Codec.Writer out = new Codec.Writer(Codec.COMMIT);
+        out.writeString(this.message);
+        out.writeSignedVarint(this.time);
+        out.writeHash(this.parent);
+        out.writeHash(this.second_parent);
+        out.writeHash(this.tree);
+        return out.toBytes();
+    }
+
+    /** Returns the commit encoded in BYTES, which may also have been written with Java serialization */
+    public static Commit fromBytes (byte[] bytes) {
+        if (Codec.isSerialized(bytes)) {
+            return Codec.deserialize(bytes, Commit.class);
+        }
+        Codec.Reader in = Codec.reader(bytes, Codec.COMMIT);
+        String message = in.readString();
+        long time = in.readSignedVarint();
+        String parent = in.readHash();
+        String second_parent = in.readHash();
+        Commit commit = new Commit(message, parent, second_parent, in.readHash());
+        commit.time = time;
+        commit.timestamp = formatTimestamp(time);
+        return commit;
+    }
+
+    /** Returns the hash of the tracked file, or null if the file is not tracked. Unless the tracked files
+     *  were already flattened, only the trees on the path of the file are read.
+     */
     public String trackedFileHash (String file_name) {
-        return this.referenced_blobs.get(file_name);
+        if (this.referenced_blobs != null) {
+            return this.referenced_blobs.get(file_name);
+        }
+        return Tree.lookup(this.tree, file_name);
     }
     /** Returns true if the given file is tracked by this commit */
     public boolean isTracking (String file_name) {
-        return this.referenced_blobs.containsKey(file_name);
+        return this.trackedFileHash(file_name) != null;
     }
 
-    /** Returns the tracked files */
+    /** Returns the tracked files (with their paths relative to the working directory) and the hashes of
+     *  their blobs. The map must not be modified.
+     */
     public TreeMap<String, String> getReferencedBlobs () {
+        if (this.referenced_blobs == null) {
+            this.referenced_blobs = Tree.flatten(this.tree);
+        }
         return this.referenced_blobs;
     }
 
-    /** Adds a new blob */
-    public void addBlob (String key, String value) {
-        this.referenced_blobs.put(key, value);
+    /** Returns the filenames tracked by this commit */
+    public Set<String> getFileNames () {
+        return this.getReferencedBlobs().keySet();
+    }
+
+    /** Returns a commit read from a repository created before trees, which lists its blobs in
+     *  REFERENCED_BLOBS
+     */
+    private static Commit legacyCommit (String timestamp, long time, String message, String parent,
+                                        TreeMap<String, String> referenced_blobs) {
+        Commit commit = new Commit(message, parent, null);
+        commit.time = time;
+        commit.timestamp = timestamp;
+        commit.legacy = true;
+        commit.referenced_blobs = referenced_blobs == null ? new TreeMap<>() : referenced_blobs;
+        return commit;
     }
 
-    /** removes a tracked blob */
-    public void removeBlob (String key) {
-        this.referenced_blobs.remove(key);
+    /** Returns the time of a commit from its formatted TIMESTAMP (see formatTimestamp), for the commits which
+     *  only recorded their timestamp
+     */
+    private static long parseTimestamp (String timestamp) {
+        try {
+            return new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z").parse(timestamp).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
     }
 
-    /** Returns the filenames tracked by this commit */
-    public Set<String> getFileNames () {
-        return this.referenced_blobs.keySet();
+    /** The fields of the first version of the class : the tracked files are listed in the commit */
+    static class Version1 implements Serializable {
+        private static final long serialVersionUID = 5097849497524643389L;
+        private String timestamp;
+        private String message;
+        private String parent;
+        private TreeMap<String, String> referenced_blobs;
+
+        private Object readResolve () {
+            return legacyCommit(this.timestamp, parseTimestamp(this.timestamp), this.message, this.parent,
+                    this.referenced_blobs);
+        }
     }
 }
-
-
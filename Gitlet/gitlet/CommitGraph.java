@@ -0,0 +1,597 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Represents the commit graph of a repository.
+ *  The commit graph is an append-only file with one fixed-size record per commit. Each record stores
+ *  the hash of the commit, the hashes of its parents, its time, its generation number and the location
+ *  of its message in a separate messages file. Records are written in topological order : a commit is
+ *  always recorded after its parents. Commands which only need this metadata (like log) can walk the history
+ *  using these two files instead of deserializing every commit object.
+ *
+ *  The graph also maintains secondary indexes (see SortedIndex) from the hash of every commit, from the
+ *  hash of every commit message and from the hash of every word in the messages, to the positions of the
+ *  commits in the graph. They are used to look up commits by (abbreviated) id and by find, and are brought
+ *  up to date with the graph whenever a commit is appended.
+ *
+ *  The generation number of a commit is one more than the largest generation number of its parents (the
+ *  initial commit has generation 1), so an ancestor always has a smaller generation number than its
+ *  descendants. This bounds the walks needed to find the common ancestors of two commits.
+ *
+ *  @author Rishikesh S
+ */
+public class CommitGraph {
+
+    /** Pattern matching the words of commit messages */
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    /** Pattern matching commit ids and their prefixes */
+    private static final Pattern HEX = Pattern.compile("[0-9a-f]+");
+
+    /** Magic number at the start of the graph file */
+    private static final int MAGIC = 0x474c4347;
+
+    /** Version of the graph file format. Bumping it makes existing graphs (and their indexes) be rebuilt */
+    private static final int VERSION = 3;
+
+    /** Size of the header at the start of the graph file : magic number and version */
+    private static final int HEADER_SIZE = 8;
+
+    /** Offsets of the fields of a record : hash, parent hash, second parent hash, time, generation
+     *  number, message offset and message length
+     */
+    private static final int PARENT_OFFSET = Utils.UID_BYTES;
+    private static final int SECOND_PARENT_OFFSET = 2 * Utils.UID_BYTES;
+    private static final int TIME_OFFSET = 3 * Utils.UID_BYTES;
+    private static final int GENERATION_OFFSET = TIME_OFFSET + 8;
+    private static final int MESSAGE_OFFSET = GENERATION_OFFSET + 4;
+
+    /** Size of a record */
+    private static final int RECORD_SIZE = MESSAGE_OFFSET + 8 + 4;
+
+    /** Size of the keys of the message and word indexes : a prefix of the SHA-1 hash of the text */
+    private static final int TEXT_KEY_SIZE = 8;
+
+    /** The file storing the commit records */
+    private final File graph_file;
+
+    /** The file storing the commit messages */
+    private final File messages_file;
+
+    /** Index from the hashes of the commits to their positions */
+    private final SortedIndex hash_index;
+
+    /** Index from the hashes of the commit messages to the positions of the commits */
+    private final SortedIndex message_index;
+
+    /** Index from the hashes of the words of the commit messages to the positions of the commits */
+    private final SortedIndex word_index;
+
+    /** The file storing the number of commits of the graph which have been added to the indexes */
+    private final File indexed_file;
+
+    /** The object store the graph is rebuilt from */
+    private final ObjectStore objects;
+
+    /** The records of the graph file, loaded lazily. Null if not loaded yet */
+    private ByteBuffer records;
+
+    /** The contents of the messages file, loaded lazily */
+    private ByteBuffer messages;
+
+    /** Represents the metadata of a single commit stored in the graph */
+    public static class Entry {
+        /** Hash of the commit */
+        public final String hash;
+        /** Hash of the parent commit. Null for the initial commit */
+        public final String parent;
+        /** Hash of the second parent of a merge commit. Null for other commits */
+        public final String second_parent;
+        /** Time of the commit in milliseconds since the Unix Epoch */
+        public final long time;
+        /** Generation number of the commit */
+        public final int generation;
+        /** The commit message */
+        public final String message;
+
+        Entry (String hash, String parent, String second_parent, long time, int generation, String message) {
+            this.hash = hash;
+            this.parent = parent;
+            this.second_parent = second_parent;
+            this.time = time;
+            this.generation = generation;
+            this.message = message;
+        }
+    }
+
+    /** Constructor. All the files of the graph are stored in GRAPH_DIR, and the commits are stored in
+     *  OBJECTS
+     */
+    public CommitGraph (File graph_dir, ObjectStore objects) {
+        this.objects = objects;
+        this.graph_file = Utils.join(graph_dir, "commit-graph");
+        this.messages_file = Utils.join(graph_dir, "messages");
+        this.hash_index = new SortedIndex(Utils.join(graph_dir, "hash-index"),
+                Utils.join(graph_dir, "hash-index.log"), Utils.UID_BYTES);
+        this.message_index = new SortedIndex(Utils.join(graph_dir, "message-index"),
+                Utils.join(graph_dir, "message-index.log"), TEXT_KEY_SIZE);
+        this.word_index = new SortedIndex(Utils.join(graph_dir, "word-index"),
+                Utils.join(graph_dir, "word-index.log"), TEXT_KEY_SIZE);
+        this.indexed_file = Utils.join(graph_dir, "indexed");
+    }
+
+    /** Appends a record for the given commit to the graph. If the graph does not exist yet (e.g. a
+     *  repository created before the graph was introduced), it is rebuilt from the commit objects instead.
+     */
+    public void append (String hash, Commit commit) {
+        if (!this.graph_file.exists()) {
+            this.rebuild();
+            return;
+        }
+        int generation = 1 + Math.max(this.generationOf(commit.getParent()),
+                this.generationOf(commit.getSecondParent()));
+        this.writeRecord(hash, commit, generation);
+        this.records = null;
+        this.updateIndexes();
+    }
+
+    /** Rebuilds the graph from all the commits stored in the repository */
+    public void rebuild () {
+        this.graph_file.getParentFile().mkdirs();
+        this.graph_file.delete();
+        this.messages_file.delete();
+        this.hash_index.clear();
+        this.message_index.clear();
+        this.word_index.clear();
+        this.indexed_file.delete();
+        writeHeader();
+        HashMap<String, Commit> commits = new HashMap<>();
+        for (String s : this.objects.commitHashes()) {
+            commits.put(s, this.objects.readCommit(s));
+        }
+        /* Recording the commits in the order in which they were made, except that the parents of a commit
+         * are always recorded before it. The parents are visited with an explicit stack, as histories can be
+         * much deeper than the call stack.
+         */
+        List<String> by_time = new ArrayList<>(commits.keySet());
+        by_time.sort(Comparator.comparingLong((String h) -> commits.get(h).getTime()).thenComparing(h -> h));
+        HashMap<String, Integer> generations = new HashMap<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        for (String start : by_time) {
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                String hash = stack.peek();
+                if (generations.containsKey(hash)) {
+                    stack.pop();
+                    continue;
+                }
+                Commit commit = commits.get(hash);
+                boolean parents_recorded = true;
+                for (String parent : new String[] {commit.getParent(), commit.getSecondParent()}) {
+                    if (parent != null && commits.containsKey(parent) && !generations.containsKey(parent)) {
+                        stack.push(parent);
+                        parents_recorded = false;
+                    }
+                }
+                if (parents_recorded) {
+                    stack.pop();
+                    int generation = 1 + Math.max(generations.getOrDefault(commit.getParent(), 0),
+                            generations.getOrDefault(commit.getSecondParent(), 0));
+                    generations.put(hash, generation);
+                    this.writeRecord(hash, commit, generation);
+                }
+            }
+        }
+        this.records = null;
+        this.updateIndexes();
+    }
+
+    /** Rebuilds the graph from all the commits stored in the repository, in a new directory next to the
+     *  graph directory which then replaces it. A process which already loaded the graph keeps reading the
+     *  files it loaded until it reloads them. If another process rebuilt the graph in the meantime (when it
+     *  found none), its graph is kept, as it was rebuilt from the same commits.
+     */
+    public void rebuildAside () {
+        File graph_dir = this.graph_file.getParentFile();
+        File new_dir = new File(graph_dir.getPath() + ".new");
+        File old_dir = new File(graph_dir.getPath() + ".old");
+        deleteFlatDirectory(new_dir);
+        deleteFlatDirectory(old_dir);
+        new CommitGraph(new_dir, this.objects).rebuild();
+        try {
+            if (graph_dir.exists()) {
+                Files.move(graph_dir.toPath(), old_dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(new_dir.toPath(), graph_dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (!graph_dir.exists()) {
+                throw Utils.error("Error when replacing the commit graph");
+            }
+        }
+        deleteFlatDirectory(new_dir);
+        deleteFlatDirectory(old_dir);
+        this.records = null;
+        this.hash_index.invalidate();
+        this.message_index.invalidate();
+        this.word_index.invalidate();
+    }
+
+    /** Deletes DIR, which only contains plain files, if it exists */
+    private static void deleteFlatDirectory (File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /** Returns the hash of the lowest common ancestor of the commits A and B : a commit which is an
+     *  ancestor of both (a commit is its own ancestor), and which is not an ancestor of any other such
+     *  commit. If there are several of them, the one with the largest generation number is returned.
+     *  Returns null if the commits have no common ancestor, and throws an error if a commit on the way is not
+     *  in the graph.
+     *
+     *  The ancestors of both commits are walked together, in decreasing order of generation number, and
+     *  marked with the commits they were reached from. As all the children of a commit have larger
+     *  generation numbers, a commit is only taken off the queue once it has been reached from every path,
+     *  so the first commit reached from both A and B is a lowest common ancestor. Only the commits with
+     *  larger generation numbers than it are visited, and only their graph records are read.
+     */
+    public String lowestCommonAncestor (String a, String b) {
+        final int FROM_A = 1;
+        final int FROM_B = 2;
+        HashMap<String, Integer> reached_from = new HashMap<>();
+        PriorityQueue<Entry> queue = new PriorityQueue<>(
+                Comparator.comparingInt((Entry e) -> e.generation).reversed());
+        reached_from.put(a, FROM_A);
+        reached_from.merge(b, FROM_B, (x, y) -> x | y);
+        queue.add(this.entryOf(a));
+        if (!a.equals(b)) {
+            queue.add(this.entryOf(b));
+        }
+        while (!queue.isEmpty()) {
+            Entry e = queue.poll();
+            int flags = reached_from.get(e.hash);
+            if (flags == (FROM_A | FROM_B)) {
+                return e.hash;
+            }
+            for (String parent : new String[] {e.parent, e.second_parent}) {
+                if (parent == null) {
+                    continue;
+                }
+                Integer parent_flags = reached_from.get(parent);
+                if (parent_flags == null) {
+                    reached_from.put(parent, flags);
+                    queue.add(this.entryOf(parent));
+                }
+                else {
+                    reached_from.put(parent, parent_flags | flags);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the generation number of the given commit, or 0 if HASH is null */
+    private int generationOf (String hash) {
+        if (hash == null) {
+            return 0;
+        }
+        return this.entryOf(hash).generation;
+    }
+
+    /** Returns the record of the given commit. Throws an error if the commit is not in the graph */
+    private Entry entryOf (String hash) {
+        Entry e = this.get(hash);
+        if (e == null) {
+            throw Utils.error("Commit %s is not in the commit graph", hash);
+        }
+        return e;
+    }
+
+    /** Returns the hashes of all the commits whose hash starts with PREFIX, in sorted order. PREFIX may be
+     *  a full hash. The hash index is binary searched for the range of hashes starting with the prefix, so
+     *  this takes O(log n) time. Returns an empty list if PREFIX is not a (lowercase) hexadecimal string of
+     *  at most 40 characters.
+     */
+    public List<String> resolve (String prefix) {
+        List<String> result = new ArrayList<>();
+        if (prefix.isEmpty() || prefix.length() > 2 * Utils.UID_BYTES || !HEX.matcher(prefix).matches()) {
+            return result;
+        }
+        String padding_low = "0".repeat(2 * Utils.UID_BYTES - prefix.length());
+        String padding_high = "f".repeat(2 * Utils.UID_BYTES - prefix.length());
+        for (SortedIndex.Entry e : this.hash_index.range(Utils.hashToBytes(prefix + padding_low),
+                Utils.hashToBytes(prefix + padding_high))) {
+            String hash = Utils.bytesToHash(e.key, 0);
+            /* The same commit may have been indexed twice if an update was interrupted */
+            if (result.isEmpty() || !result.get(result.size() - 1).equals(hash)) {
+                result.add(hash);
+            }
+        }
+        return result;
+    }
+
+    /** Drops the loaded graph and indexes if another process appended to the graph since they were loaded,
+     *  so that a long running process (the daemon) sees the new commits. They are reloaded on next use.
+     */
+    public void refresh () {
+        if (this.records != null && this.graph_file.length() != this.records.limit()) {
+            this.records = null;
+            this.hash_index.invalidate();
+            this.message_index.invalidate();
+            this.word_index.invalidate();
+        }
+    }
+
+    /** Returns the entries of the commits whose message is exactly MESSAGE, in the order in which they
+     *  were saved.
+     */
+    public List<Entry> findByMessage (String message) {
+        List<Entry> result = new ArrayList<>();
+        for (int position : this.message_index.lookup(textKey(message))) {
+            Entry e = this.entryAt(position);
+            if (e.message.equals(message)) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the entries of the commits whose message contains TEXT, in the order in which they were
+     *  saved. If TEXT contains a whole word (one which is not at the start or end of TEXT, as those may
+     *  only be parts of words in the message), only the commits with that word are looked at.
+     *  Otherwise every message is searched.
+     */
+    public List<Entry> findContaining (String text) {
+        String longest_word = null;
+        Matcher words = WORD.matcher(text);
+        while (words.find()) {
+            if (words.start() > 0 && words.end() < text.length()
+                    && (longest_word == null || words.group().length() > longest_word.length())) {
+                longest_word = words.group();
+            }
+        }
+        List<Entry> result = new ArrayList<>();
+        if (longest_word != null) {
+            for (int position : this.word_index.lookup(textKey(longest_word.toLowerCase()))) {
+                Entry e = this.entryAt(position);
+                if (e.message.contains(text)) {
+                    result.add(e);
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < this.size(); i += 1) {
+                Entry e = this.entryAt(i);
+                if (e.message.contains(text)) {
+                    result.add(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the entries of the commits made between FROM and TO (both inclusive, in milliseconds since
+     *  the Unix Epoch), in the order in which they were saved. Only the times stored in the graph records
+     *  are read, so no message is decoded unless its commit is in the range.
+     */
+    public List<Entry> findBetween (long from, long to) {
+        this.load();
+        List<Entry> result = new ArrayList<>();
+        int count = this.size();
+        for (int i = 0; i < count; i += 1) {
+            long time = this.records.getLong(HEADER_SIZE + i * RECORD_SIZE + TIME_OFFSET);
+            if (time >= from && time <= to) {
+                result.add(this.entryAt(i));
+            }
+        }
+        return result;
+    }
+
+    /** Adds the commits of the graph which are not in the indexes yet to them. The number
+     *  of indexed commits is only recorded once they have been added, so an interrupted update is redone
+     *  (and any duplicate entries ignored) the next time.
+     */
+    private void updateIndexes () {
+        /* The graph is loaded first, as loading it may bring the indexes up to date itself */
+        int count = this.size();
+        int indexed = this.indexedCount();
+        if (indexed >= count) {
+            return;
+        }
+        List<SortedIndex.Entry> hashes = new ArrayList<>();
+        List<SortedIndex.Entry> messages = new ArrayList<>();
+        List<SortedIndex.Entry> words = new ArrayList<>();
+        for (int i = indexed; i < count; i += 1) {
+            Entry entry = this.entryAt(i);
+            String message = entry.message;
+            hashes.add(new SortedIndex.Entry(Utils.hashToBytes(entry.hash), i));
+            messages.add(new SortedIndex.Entry(textKey(message), i));
+            HashSet<String> distinct_words = new HashSet<>();
+            Matcher m = WORD.matcher(message.toLowerCase());
+            while (m.find()) {
+                distinct_words.add(m.group());
+            }
+            for (String w : distinct_words) {
+                words.add(new SortedIndex.Entry(textKey(w), i));
+            }
+        }
+        this.hash_index.add(hashes);
+        this.message_index.add(messages);
+        this.word_index.add(words);
+        Utils.writeContents(this.indexed_file, ByteBuffer.allocate(4).putInt(count).array());
+    }
+
+    /** Returns the number of commits of the graph which have been added to the indexes */
+    private int indexedCount () {
+        if (!this.indexed_file.exists()) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Utils.readContents(this.indexed_file)).getInt();
+    }
+
+    /** Returns the key of TEXT in the message and word indexes */
+    private static byte[] textKey (String text) {
+        return Arrays.copyOf(Utils.hashToBytes(Utils.sha1(text)), TEXT_KEY_SIZE);
+    }
+
+    /** Returns true if the graph has a record for the given commit */
+    public boolean contains (String hash) {
+        return this.positionOf(hash) >= 0;
+    }
+
+    /** Returns the number of commits in the graph. A record may be incomplete if a previous command was
+     *  interrupted while appending to the graph, in which case it is ignored (and written over by the next
+     *  append, see writeRecord).
+     */
+    public int size () {
+        this.load();
+        return (this.records.limit() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /** Returns the entry of the given commit, or null if the graph has no record of it */
+    public Entry get (String hash) {
+        int position = this.positionOf(hash);
+        if (position < 0) {
+            return null;
+        }
+        return this.entryAt(position);
+    }
+
+    /** Returns the position of the record of the given commit, or -1 if the graph has no record of it */
+    private int positionOf (String hash) {
+        this.load();
+        List<Integer> positions = this.hash_index.lookup(Utils.hashToBytes(hash));
+        return positions.isEmpty() ? -1 : positions.get(0);
+    }
+
+    /** Returns the entry stored at the given position. Entries are stored in the order in which
+     *  the commits were saved.
+     */
+    public Entry entryAt (int position) {
+        this.load();
+        int record_start = HEADER_SIZE + position * RECORD_SIZE;
+        byte[] record = new byte[RECORD_SIZE];
+        this.records.get(record_start, record);
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        String hash = Utils.bytesToHash(record, 0);
+        String parent = isZero(record, PARENT_OFFSET) ? null : Utils.bytesToHash(record, PARENT_OFFSET);
+        String second_parent = isZero(record, SECOND_PARENT_OFFSET) ? null
+                : Utils.bytesToHash(record, SECOND_PARENT_OFFSET);
+        buffer.position(TIME_OFFSET);
+        long time = buffer.getLong();
+        int generation = buffer.getInt();
+        long message_offset = buffer.getLong();
+        int message_length = buffer.getInt();
+        byte[] message = new byte[message_length];
+        this.messages.get((int) message_offset, message);
+        return new Entry(hash, parent, second_parent, time, generation, new String(message, StandardCharsets.UTF_8));
+    }
+
+    /** Loads the graph and messages files into memory if they haven't been loaded already. If a previous
+     *  command was interrupted after appending to the graph but before adding the commit to the indexes, the
+     *  indexes are brought up to date, as commits are only looked up through them.
+     */
+    private void load () {
+        if (this.records != null) {
+            return;
+        }
+        this.graph_file.getParentFile().mkdirs();
+        if (!this.graph_file.exists()) {
+            this.rebuild();
+        }
+        this.records = Utils.mapFile(this.graph_file);
+        this.messages = Utils.mapFile(this.messages_file);
+        if (this.records.limit() < HEADER_SIZE || this.records.getInt(0) != MAGIC
+                || this.records.getInt(4) != VERSION) {
+            this.rebuild();
+            this.load();
+            return;
+        }
+        if (this.indexedCount() < this.size()) {
+            this.updateIndexes();
+        }
+    }
+
+    /** Writes the header of a new graph file */
+    private void writeHeader () {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        appendTo(this.graph_file, header.array());
+        appendTo(this.messages_file, new byte[0]);
+    }
+
+    /** Appends the message of the commit to the messages file and its record to the graph file. The record
+     *  is written right after the last complete record, over what is left of a record whose write was
+     *  interrupted, so that the records which follow it are not misaligned. A message whose record was
+     *  not written is left unused in the messages file.
+     */
+    private void writeRecord (String hash, Commit commit, int generation) {
+        byte[] message = commit.getMessage().getBytes(StandardCharsets.UTF_8);
+        long message_offset = this.messages_file.length();
+        appendTo(this.messages_file, message);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(Utils.hashToBytes(hash));
+        record.put(commit.getParent() == null ? new byte[Utils.UID_BYTES] : Utils.hashToBytes(commit.getParent()));
+        record.put(commit.getSecondParent() == null ? new byte[Utils.UID_BYTES]
+                : Utils.hashToBytes(commit.getSecondParent()));
+        record.putLong(commit.getTime());
+        record.putInt(generation);
+        record.putLong(message_offset);
+        record.putInt(message.length);
+        try (FileChannel out = FileChannel.open(this.graph_file.toPath(), StandardOpenOption.WRITE)) {
+            long end = HEADER_SIZE + (out.size() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            out.truncate(end);
+            ByteBuffer buffer = ByteBuffer.wrap(record.array());
+            while (buffer.hasRemaining()) {
+                out.write(buffer, end + buffer.position());
+            }
+        } catch (IOException e) {
+            throw Utils.error("Error when writing to %s", this.graph_file.getName());
+        }
+    }
+
+    /** Returns true if the UID_BYTES bytes of BYTES starting at OFFSET are all zero */
+    private static boolean isZero (byte[] bytes, int offset) {
+        for (int i = offset; i < offset + Utils.UID_BYTES; i += 1) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Appends the given bytes to the end of FILE, creating it if needed */
+    private static void appendTo (File file, byte[] bytes) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw Utils.error("Error when writing to %s", file.getName());
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/** Compresses the objects of the object store and the staged files.
+ *  A compressed object starts with a header : the magic bytes 0 'G' 'L' 'Z', the compression method
+ *  (only DEFLATE so far) and the size of the uncompressed contents, and is followed by a zlib stream.
+ *  Objects smaller than compression.threshold bytes, or which do not get smaller, are stored as they are,
+ *  as were all the objects written before compression was added. Those are told apart by the header, and
+ *  contents which happen to start with the magic bytes are always compressed, so they cannot be mistaken
+ *  for a header : a stored object which has the header but does not inflate to its size is corrupt, and
+ *  reading it throws an error. compression.level (see Config) is the Deflater level, 0 storing everything uncompressed.
+ *
+ *  Files are compressed and decompressed as streams, so they never have to fit in memory.
+ *
+ *  @author Rishikesh S
+ */
+public class Compression {
+
+    /** Magic bytes at the start of a compressed object */
+    private static final byte[] MAGIC = {0, 'G', 'L', 'Z'};
+
+    /** Compression method of the objects compressed with a Deflater */
+    private static final byte DEFLATE = 1;
+
+    /** Size of the header : magic bytes, method and uncompressed size */
+    static final int HEADER_SIZE = MAGIC.length + 1 + 8;
+
+    /** Default size below which objects are not compressed */
+    private static final long DEFAULT_THRESHOLD = 512;
+
+    /** Largest ratio between the inflated and the compressed size of a zlib stream */
+    private static final long MAX_RATIO = 1032;
+
+    /** Size of the buffers used when streaming */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Returns the compression level set in the config */
+    private static int level () {
+        return Math.max(-1, Math.min(9, Config.getInt("compression.level", Deflater.DEFAULT_COMPRESSION)));
+    }
+
+    /** Returns true if contents of SIZE bytes should be compressed */
+    private static boolean worthCompressing (long size) {
+        return level() != 0 && size >= Config.getLong("compression.threshold", DEFAULT_THRESHOLD);
+    }
+
+    /** Returns true if the bytes of BUFFER from OFFSET start with the header of a compressed object */
+    private static boolean hasHeader (byte[] buffer, int offset, int length) {
+        return length >= HEADER_SIZE && buffer[offset + MAGIC.length] == DEFLATE
+                && Arrays.equals(buffer, offset, offset + MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /** Returns the header of a compressed object of SIZE bytes */
+    private static byte[] header (long size) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put(DEFLATE).putLong(size);
+        return header.array();
+    }
+
+    /** Returns CONTENTS in the form in which they are stored : compressed, or as they are */
+    public static byte[] compress (byte[] contents) {
+        boolean ambiguous = hasHeader(contents, 0, contents.length);
+        if (!ambiguous && !worthCompressing(contents.length)) {
+            return contents;
+        }
+        Deflater deflater = new Deflater(level());
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(contents.length / 2 + HEADER_SIZE);
+            out.writeBytes(header(contents.length));
+            deflater.setInput(contents);
+            deflater.finish();
+            byte[] buffer = new byte[Math.min(BUFFER_SIZE, contents.length + 64)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return !ambiguous && out.size() >= contents.length ? contents : out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Returns the contents of the object STORED, decompressing them if needed */
+    public static byte[] decompress (byte[] stored) {
+        if (!hasHeader(stored, 0, stored.length)) {
+            return stored;
+        }
+        long size = ByteBuffer.wrap(stored).getLong(MAGIC.length + 1);
+        /* A size the stream could not inflate to is not allocated */
+        if (size < 0 || size > Integer.MAX_VALUE - 8 || size > (stored.length - HEADER_SIZE) * MAX_RATIO) {
+            throw Utils.error("Corrupt object : invalid size %d", size);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            byte[] contents = new byte[(int) size];
+            inflater.setInput(stored, HEADER_SIZE, stored.length - HEADER_SIZE);
+            int length = 0;
+            while (length < contents.length && !inflater.finished()) {
+                int inflated = inflater.inflate(contents, length, contents.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != contents.length || !inflater.finished()) {
+                throw Utils.error("Corrupt object : %d bytes inflated out of %d", length, size);
+            }
+            return contents;
+        } catch (DataFormatException e) {
+            throw Utils.error("Corrupt object : %s", e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Writes the contents of SOURCE to DEST in the form in which they are stored. Contents which are not
+     *  compressed are copied as they are.
+     */
+    public static void compressFile (File source, File dest) {
+        long size = source.length();
+        boolean ambiguous = startsWithHeader(source);
+        if (!ambiguous && !worthCompressing(size)) {
+            Utils.copyFile(source, dest);
+            return;
+        }
+        Deflater deflater = new Deflater(level());
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new FileOutputStream(dest)) {
+            out.write(header(size));
+            DeflaterOutputStream compressed = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            in.transferTo(compressed);
+            compressed.finish();
+        } catch (IOException e) {
+            throw Utils.error("Error when compressing %s", source.getPath());
+        } finally {
+            deflater.end();
+        }
+        if (!ambiguous && dest.length() >= size) {
+            Utils.copyFile(source, dest);
+        }
+    }
+
+    /** Returns the uncompressed contents of the stored file STORED as a stream */
+    public static InputStream open (File stored) throws IOException {
+        InputStream in = new FileInputStream(stored);
+        if (!startsWithHeader(stored)) {
+            return in;
+        }
+        in.skipNBytes(HEADER_SIZE);
+        /* An InflaterInputStream does not end an Inflater it was given when it is closed */
+        return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+            @Override
+            public void close () throws IOException {
+                super.close();
+                this.inf.end();
+            }
+        };
+    }
+
+    /** Writes the uncompressed contents of the stored file STORED to DEST */
+    public static void decompressFile (File stored, File dest) {
+        if (!startsWithHeader(stored)) {
+            Utils.copyFile(stored, dest);
+            return;
+        }
+        try (InputStream in = open(stored);
+             OutputStream out = new FileOutputStream(dest)) {
+            checkSize(readHead(stored), in.transferTo(out));
+        } catch (ZipException | EOFException e) {
+            throw Utils.error("Corrupt object %s : %s", stored.getName(), e.getMessage());
+        } catch (IOException e) {
+            throw Utils.error("Error when writing %s", dest.getPath());
+        }
+    }
+
+    /** Writes the uncompressed contents of the stored object STORED to OUT, from its current position.
+     *  The buffer is not modified.
+     */
+    public static void decompressTo (ByteBuffer stored, FileChannel out) throws IOException {
+        byte[] head = new byte[Math.min(HEADER_SIZE, stored.remaining())];
+        stored.get(stored.position(), head);
+        ByteBuffer input = stored.duplicate();
+        if (!hasHeader(head, 0, head.length)) {
+            while (input.hasRemaining()) {
+                out.write(input);
+            }
+            return;
+        }
+        long start = out.position();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input.position(input.position() + HEADER_SIZE));
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (!inflater.finished()) {
+                if (inflater.inflate(buffer) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated stream");
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            checkSize(head, inflater.getBytesWritten());
+        } catch (DataFormatException | GitletException e) {
+            /* The contents written so far are dropped */
+            out.truncate(start);
+            out.position(start);
+            throw Utils.error("Corrupt object : %s", e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Adds the uncompressed contents of the stored object STORED, from its current position, to the
+     *  digest MD, without holding them in memory. The buffer is not modified.
+     */
+    public static void digest (ByteBuffer stored, MessageDigest md) {
+        byte[] head = new byte[Math.min(HEADER_SIZE, stored.remaining())];
+        stored.get(stored.position(), head);
+        if (!hasHeader(head, 0, head.length)) {
+            md.update(stored.duplicate());
+            return;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            ByteBuffer input = stored.duplicate();
+            inflater.setInput(input.position(input.position() + HEADER_SIZE));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated stream");
+                }
+                md.update(buffer, 0, inflated);
+            }
+            checkSize(head, inflater.getBytesWritten());
+        } catch (DataFormatException e) {
+            throw Utils.error("Corrupt object : %s", e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Throws an error if the object whose header is HEAD did not inflate to the size in its header, but to
+     *  INFLATED bytes
+     */
+    private static void checkSize (byte[] head, long inflated) {
+        long size = ByteBuffer.wrap(head).getLong(MAGIC.length + 1);
+        if (inflated != size) {
+            throw Utils.error("Corrupt object : %d bytes inflated out of %d", inflated, size);
+        }
+    }
+
+    /** Returns the uncompressed size of a stored object of LENGTH bytes, given its first HEADER_SIZE
+     *  bytes (or all of them, if it is shorter) in HEAD
+     */
+    public static long sizeOf (byte[] head, long length) {
+        if (!hasHeader(head, 0, head.length)) {
+            return length;
+        }
+        return ByteBuffer.wrap(head).getLong(MAGIC.length + 1);
+    }
+
+    /** Returns the uncompressed size of the stored file STORED */
+    public static long sizeOf (File stored) {
+        return sizeOf(readHead(stored), stored.length());
+    }
+
+    /** Returns the first HEADER_SIZE bytes of FILE, or less if it is shorter */
+    private static byte[] readHead (File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.readNBytes(HEADER_SIZE);
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    /** Returns true if the file STORED starts with the header of a compressed object */
+    private static boolean startsWithHeader (File stored) {
+        byte[] head = readHead(stored);
+        return hasHeader(head, 0, head.length);
+    }
+}
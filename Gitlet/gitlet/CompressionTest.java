@@ -0,0 +1,242 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/** Tests of Compression : objects come back unchanged from their stored form, whether they were
+ *  compressed or not, and stored objects which have a header but cannot be inflated are rejected with an
+ *  error rather than read as they are.
+ *
+ *  @author Rishikesh S
+ */
+public class CompressionTest {
+
+    /** Magic bytes at the start of a compressed object */
+    private static final byte[] MAGIC = {0, 'G', 'L', 'Z'};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Returns SIZE random bytes */
+    private static byte[] randomBytes (Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Returns SIZE bytes of text which compress well */
+    private static byte[] text (int size) {
+        byte[] bytes = new byte[size];
+        byte[] line = "All work and no play makes Jack a dull boy.\n".getBytes();
+        for (int i = 0; i < size; i += 1) {
+            bytes[i] = line[i % line.length];
+        }
+        return bytes;
+    }
+
+    /** Returns CONTENTS preceded by the header of a compressed object of SIZE bytes */
+    private static byte[] withHeader (long size, byte[] contents) {
+        ByteBuffer buffer = ByteBuffer.allocate(Compression.HEADER_SIZE + contents.length);
+        buffer.put(MAGIC).put((byte) 1).putLong(size).put(contents);
+        return buffer.array();
+    }
+
+    /** Returns the SHA-1 hash of the contents of the stored object STORED */
+    private static String digest (byte[] stored) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        Compression.digest(ByteBuffer.wrap(stored), md);
+        return Utils.bytesToHash(md.digest(), 0);
+    }
+
+    /** Returns a new file holding CONTENTS */
+    private File newFile (byte[] contents) throws IOException {
+        File file = this.folder.newFile();
+        Utils.writeContents(file, (Object) contents);
+        return file;
+    }
+
+    /** Asserts that CONTENTS come back unchanged from their stored form, read in every way */
+    private void assertRoundTrip (byte[] contents) throws IOException, NoSuchAlgorithmException {
+        byte[] stored = Compression.compress(contents);
+        assertArrayEquals(contents, Compression.decompress(stored));
+        assertEquals(Utils.sha1((Object) contents), digest(stored));
+        assertEquals(contents.length, Compression.sizeOf(Arrays.copyOf(stored,
+                Math.min(stored.length, Compression.HEADER_SIZE)), stored.length));
+
+        File stored_file = this.folder.newFile();
+        Compression.compressFile(this.newFile(contents), stored_file);
+        assertArrayEquals(stored, Utils.readContents(stored_file));
+        assertEquals(contents.length, Compression.sizeOf(stored_file));
+        try (InputStream in = Compression.open(stored_file)) {
+            assertArrayEquals(contents, in.readAllBytes());
+        }
+        this.assertStoredAs(contents, stored_file);
+    }
+
+    /** Asserts that the stored file STORED_FILE is read back as CONTENTS, both when decompressed to a
+     *  file and from a buffer
+     */
+    private void assertStoredAs (byte[] contents, File stored_file) throws IOException {
+        File dest = this.folder.newFile();
+        Compression.decompressFile(stored_file, dest);
+        assertArrayEquals(contents, Utils.readContents(dest));
+
+        File channel_dest = this.folder.newFile();
+        try (FileChannel out = FileChannel.open(channel_dest.toPath(), StandardOpenOption.WRITE)) {
+            /* Written after some existing contents, which must be kept */
+            out.write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+            Compression.decompressTo(ByteBuffer.wrap(Utils.readContents(stored_file)), out);
+        }
+        byte[] written = Utils.readContents(channel_dest);
+        assertArrayEquals(new byte[] {1, 2, 3}, Arrays.copyOf(written, 3));
+        assertArrayEquals(contents, Arrays.copyOfRange(written, 3, written.length));
+    }
+
+    /** Asserts that reading the stored object STORED fails with an error in every way, and that
+     *  decompressTo drops what it wrote of it
+     */
+    private void assertCorrupt (byte[] stored) throws IOException, NoSuchAlgorithmException {
+        try {
+            Compression.decompress(stored);
+            fail("Corrupt object was decompressed");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+        try {
+            digest(stored);
+            fail("Corrupt object was hashed");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+        try {
+            Compression.decompressFile(this.newFile(stored), this.folder.newFile());
+            fail("Corrupt object was decompressed to a file");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+        File channel_dest = this.folder.newFile();
+        try (FileChannel out = FileChannel.open(channel_dest.toPath(), StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+            Compression.decompressTo(ByteBuffer.wrap(stored), out);
+            fail("Corrupt object was decompressed to a channel");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+        assertArrayEquals(new byte[] {1, 2, 3}, Utils.readContents(channel_dest));
+    }
+
+    @Test
+    public void testCompressible () throws IOException, NoSuchAlgorithmException {
+        byte[] contents = text(100000);
+        assertTrue("Text was not compressed", Compression.compress(contents).length < contents.length / 10);
+        this.assertRoundTrip(contents);
+    }
+
+    @Test
+    public void testIncompressible () throws IOException, NoSuchAlgorithmException {
+        /* Random contents do not get smaller, so they are stored as they are */
+        byte[] contents = randomBytes(new Random(1), 100000);
+        assertArrayEquals(contents, Compression.compress(contents));
+        this.assertRoundTrip(contents);
+    }
+
+    @Test
+    public void testSmallAndEmpty () throws IOException, NoSuchAlgorithmException {
+        byte[] small = text(100);
+        assertArrayEquals(small, Compression.compress(small));
+        this.assertRoundTrip(small);
+        this.assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void testContentsStartingWithMagic () throws IOException, NoSuchAlgorithmException {
+        /* Contents which look like a header are always compressed, however small */
+        byte[] looks_compressed = withHeader(5, new byte[] {1, 2, 3, 4, 5});
+        assertFalse(Arrays.equals(looks_compressed, Compression.compress(looks_compressed)));
+        this.assertRoundTrip(looks_compressed);
+        this.assertRoundTrip(withHeader(100000, randomBytes(new Random(2), 100000)));
+        this.assertRoundTrip(MAGIC);
+    }
+
+    @Test
+    public void testCorruptStream () throws IOException, NoSuchAlgorithmException {
+        /* Contents starting with the magic bytes are always compressed, so a header followed by bytes which
+         * are not a zlib stream is corrupt
+         */
+        this.assertCorrupt(withHeader(1000, randomBytes(new Random(3), 1000)));
+    }
+
+    @Test
+    public void testTruncatedStream () throws IOException, NoSuchAlgorithmException {
+        byte[] compressed = Compression.compress(text(100000));
+        for (int length : new int[] {Compression.HEADER_SIZE, Compression.HEADER_SIZE + 1, compressed.length / 2,
+                compressed.length - 1}) {
+            this.assertCorrupt(Arrays.copyOf(compressed, length));
+        }
+    }
+
+    @Test
+    public void testWrongSize () throws IOException, NoSuchAlgorithmException {
+        byte[] contents = text(100000);
+        byte[] compressed = Compression.compress(contents);
+        /* A size which does not match the stream */
+        byte[] stored = compressed.clone();
+        ByteBuffer.wrap(stored).putLong(MAGIC.length + 1, contents.length - 1);
+        this.assertCorrupt(stored);
+        ByteBuffer.wrap(stored).putLong(MAGIC.length + 1, contents.length + 1);
+        this.assertCorrupt(stored);
+        /* A size far larger than the stream could inflate to is not allocated */
+        ByteBuffer.wrap(stored).putLong(MAGIC.length + 1, Integer.MAX_VALUE - 100);
+        this.assertCorrupt(stored);
+        ByteBuffer.wrap(stored).putLong(MAGIC.length + 1, -1);
+        this.assertCorrupt(stored);
+    }
+
+    @Test
+    public void testRandomCorruption () {
+        Random random = new Random(4);
+        byte[] compressed = Compression.compress(text(5000));
+        for (int i = 0; i < 1000; i += 1) {
+            byte[] stored = compressed.clone();
+            stored[Compression.HEADER_SIZE + random.nextInt(stored.length - Compression.HEADER_SIZE)] =
+                    (byte) random.nextInt(256);
+            try {
+                /* Either the stream still inflates to the right size or it is rejected */
+                assertEquals(5000, Compression.decompress(stored).length);
+            } catch (GitletException e) {
+                /* Expected */
+            }
+        }
+    }
+
+    /** Overwrites the bytes of FILE at OFFSET with the long VALUE */
+    private static void writeLong (File file, long offset, long value) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(offset);
+            out.writeLong(value);
+        }
+    }
+
+    @Test
+    public void testSizeOfCorruptFile () throws IOException {
+        File stored_file = this.newFile(Compression.compress(text(100000)));
+        writeLong(stored_file, MAGIC.length + 1, 42);
+        assertEquals(42, Compression.sizeOf(stored_file));
+        assertEquals(0, Compression.sizeOf(this.newFile(new byte[0])));
+    }
+}
@@ -0,0 +1,63 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/** Represents the configuration of a repository.
+ *  Settings are read from the config file in the .gitlet directory, which is a Java properties file
+ *  (lines of the form key=value). A setting can also be overridden for a single run with a system
+ *  property named "gitlet." followed by the key, e.g. java -Dgitlet.checkout.threads=4 gitlet.Main ...
+ *
+ *  @author Rishikesh S
+ */
+public class Config {
+
+    /** The settings read from the config file, loaded lazily. Null if not loaded yet */
+    private static Properties settings;
+
+    /** Returns the value of the given setting, or DEFAULT_VALUE if it is not set */
+    public static String get (String key, String default_value) {
+        String value = System.getProperty("gitlet." + key);
+        if (value != null) {
+            return value;
+        }
+        return settings().getProperty(key, default_value);
+    }
+
+    /** Returns the value of the given integer setting, or DEFAULT_VALUE if it is not set or not a number */
+    public static int getInt (String key, int default_value) {
+        try {
+            return Integer.parseInt(get(key, Integer.toString(default_value)).trim());
+        } catch (NumberFormatException e) {
+            return default_value;
+        }
+    }
+
+    /** Returns the value of the given long setting, or DEFAULT_VALUE if it is not set or not a number */
+    public static long getLong (String key, long default_value) {
+        try {
+            return Long.parseLong(get(key, Long.toString(default_value)).trim());
+        } catch (NumberFormatException e) {
+            return default_value;
+        }
+    }
+
+    /** Returns the settings of the config file, loading them if needed */
+    private static Properties settings () {
+        if (settings == null) {
+            settings = new Properties();
+            File config_file = Repository.CONFIG_FILE;
+            if (config_file.exists()) {
+                try (InputStream in = new FileInputStream(config_file)) {
+                    settings.load(in);
+                } catch (IOException e) {
+                    System.out.println("Error when reading the config file");
+                }
+            }
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Runs the commands of a repository in a single long running process.
+ *  Running a command normally means starting a JVM and loading the state of the repository from disk.
+ *  The daemon (started with gitlet daemon) instead keeps the repository, the object store and the commit
+ *  graph loaded, and listens on the Unix socket DAEMON_SOCKET in the .gitlet directory. While it runs,
+ *  gitlet forwards every command to it and prints its output.
+ *
+ *  A request is the arguments of the command, each followed by a NUL byte. The client then shuts down its
+ *  side of the connection, and the daemon replies with the output of the command and closes the
+ *  connection. Any client speaking this protocol can be used, e.g.
+ *  printf 'log\0' | socat - UNIX-CONNECT:.gitlet/daemon.sock
+ *  Commands are run one at a time, in the order in which they are received.
+ *
+ *  @author Rishikesh S
+ */
+public class Daemon {
+
+    /** Size of the buffer used to copy the output of a command */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Forwards the command given by ARGS to the daemon of the repository in the current directory and
+     *  prints its output. Returns false, without doing anything, if no daemon is running (in which case the
+     *  command should be run by this process).
+     */
+    public static boolean forward (String[] args) {
+        /* Batches read their commands from the standard input of this process, and the watcher runs until it
+         * is stopped, so they are not forwarded
+         */
+        if (!Repository.DAEMON_SOCKET.exists() || args[0].equals("daemon") && args.length == 1
+                || args[0].equals("batch") || args[0].equals("watch") && args.length == 1) {
+            return false;
+        }
+        SocketChannel daemon;
+        try {
+            daemon = SocketChannel.open(UnixDomainSocketAddress.of(Repository.DAEMON_SOCKET.toPath()));
+        } catch (IOException e) {
+            /* The daemon exited without removing its socket */
+            return false;
+        }
+        try (SocketChannel channel = daemon) {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            for (String arg : args) {
+                request.write(arg.getBytes(StandardCharsets.UTF_8));
+                request.write(0);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(request.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.shutdownOutput();
+            InputStream in = Channels.newInputStream(channel);
+            byte[] output = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(output)) > 0) {
+                System.out.write(output, 0, read);
+            }
+            System.out.flush();
+        } catch (IOException e) {
+            System.out.println("Lost the connection to the daemon");
+        }
+        return true;
+    }
+
+    /** Serves the commands forwarded to the socket of the repository REPO until daemon stop is received.
+     *  The output of each command (on both System.out and System.err) is sent back to its client.
+     */
+    public static void serve (Repository repo) {
+        /* Removing the socket of a daemon which exited without removing it */
+        Repository.DAEMON_SOCKET.delete();
+        PrintStream console_out = System.out;
+        PrintStream console_err = System.err;
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(Repository.DAEMON_SOCKET.toPath()));
+            console_out.printf("Daemon listening on %s\n", Repository.DAEMON_SOCKET.getPath());
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    List<String> args = readRequest(client);
+                    OutputStream client_out = new BufferedOutputStream(Channels.newOutputStream(client), BUFFER_SIZE);
+                    PrintStream out = new PrintStream(client_out, false, StandardCharsets.UTF_8);
+                    System.setOut(out);
+                    System.setErr(out);
+                    try {
+                        if (args.size() == 2 && args.get(0).equals("daemon") && args.get(1).equals("stop")) {
+                            System.out.println("Daemon stopped.");
+                            running = false;
+                        }
+                        else if (args.isEmpty()) {
+                            System.out.println("Please Enter a command.");
+                        }
+                        else {
+                            /* Picking up any change made to the repository without going through the daemon */
+                            repo.refresh();
+                            Main.dispatch(repo, args.toArray(new String[0]));
+                        }
+                    } catch (RuntimeException e) {
+                        System.out.println(e.getMessage());
+                        /* The command may have changed the state in memory before failing */
+                        try {
+                            repo.reload();
+                        } catch (RuntimeException reload_error) {
+                            console_err.printf("Error when reloading the repository : %s\n",
+                                    reload_error.getMessage());
+                        }
+                    } finally {
+                        System.setOut(console_out);
+                        System.setErr(console_err);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    console_err.printf("Error when serving a command : %s\n", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.out.printf("Could not listen on %s : %s\n", Repository.DAEMON_SOCKET.getPath(), e.getMessage());
+        } finally {
+            Repository.DAEMON_SOCKET.delete();
+        }
+    }
+
+    /** Reads the arguments of a command from CLIENT, until it shuts down its side of the connection */
+    private static List<String> readRequest (SocketChannel client) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        InputStream in = Channels.newInputStream(client);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            request.write(buffer, 0, read);
+        }
+        byte[] bytes = request.toByteArray();
+        List<String> args = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i += 1) {
+            if (bytes[i] == 0) {
+                args.add(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return args;
+    }
+}
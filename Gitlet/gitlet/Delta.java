@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Computes and applies binary deltas between two versions of a file.
+ *  A delta describes the target version as a sequence of instructions on the base version :
+ *  <ol>
+ *  <li> COPY offset length ---- copies length bytes starting at offset from the base </li>
+ *  <li> INSERT length bytes ---- inserts the given bytes, which do not appear in the base </li>
+ *  </ol>
+ *  The delta starts with the lengths of the base and the target, so that a delta applied to the wrong
+ *  base is detected. All the numbers are stored as variable length integers.
+ *
+ *  @author Rishikesh S
+ */
+public class Delta {
+
+    /** Instruction which copies a range of the base */
+    private static final int COPY = 0;
+
+    /** Instruction which inserts new bytes */
+    private static final int INSERT = 1;
+
+    /** Size of the blocks of the base which are indexed when looking for matches */
+    private static final int BLOCK_SIZE = 16;
+
+    /** Returns the delta which turns BASE into TARGET */
+    public static byte[] create (byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        /* Indexing the start of every block of the base by the hash of its contents */
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK_SIZE <= base.length; i += BLOCK_SIZE) {
+            blocks.putIfAbsent(blockHash(base, i), i);
+        }
+
+        /* Scanning the target for blocks which appear in the base, and extending every match as far
+         * as possible in both directions. Bytes between the matches are inserted as they are.
+         */
+        int insert_start = 0;
+        int i = 0;
+        while (i + BLOCK_SIZE <= target.length) {
+            Integer offset = blocks.get(blockHash(target, i));
+            if (offset == null || !Arrays.equals(base, offset, offset + BLOCK_SIZE, target, i, i + BLOCK_SIZE)) {
+                i += 1;
+                continue;
+            }
+            int base_start = offset;
+            int target_start = i;
+            while (base_start > 0 && target_start > insert_start && base[base_start - 1] == target[target_start - 1]) {
+                base_start -= 1;
+                target_start -= 1;
+            }
+            int base_end = offset + BLOCK_SIZE;
+            int target_end = i + BLOCK_SIZE;
+            while (base_end < base.length && target_end < target.length && base[base_end] == target[target_end]) {
+                base_end += 1;
+                target_end += 1;
+            }
+            writeInsert(out, target, insert_start, target_start);
+            out.write(COPY);
+            writeVarint(out, base_start);
+            writeVarint(out, target_end - target_start);
+            i = target_end;
+            insert_start = target_end;
+        }
+        writeInsert(out, target, insert_start, target.length);
+        return out.toByteArray();
+    }
+
+    /** Applies DELTA to BASE and returns the resulting target. Throws an error if DELTA was made against
+     *  another base or is corrupt, in which case no instruction reads or writes out of range.
+     */
+    public static byte[] apply (byte[] base, byte[] delta) {
+        int[] position = new int[1];
+        int base_length = readVarint(delta, position);
+        int target_length = readVarint(delta, position);
+        if (base_length != base.length) {
+            throw Utils.error("Delta does not apply to the given base");
+        }
+        /* Every byte of the delta yields at most a copy of the whole base, so a larger target is corrupt */
+        if (target_length > ((long) base.length + 1) * delta.length) {
+            throw Utils.error("Corrupt delta");
+        }
+        byte[] target = new byte[target_length];
+        int target_position = 0;
+        while (position[0] < delta.length) {
+            int instruction = delta[position[0]];
+            position[0] += 1;
+            if (instruction == COPY) {
+                int offset = readVarint(delta, position);
+                int length = readVarint(delta, position);
+                if (offset > base.length - length || length > target_length - target_position) {
+                    throw Utils.error("Corrupt delta");
+                }
+                System.arraycopy(base, offset, target, target_position, length);
+                target_position += length;
+            }
+            else if (instruction == INSERT) {
+                int length = readVarint(delta, position);
+                if (length > delta.length - position[0] || length > target_length - target_position) {
+                    throw Utils.error("Corrupt delta");
+                }
+                System.arraycopy(delta, position[0], target, target_position, length);
+                position[0] += length;
+                target_position += length;
+            }
+            else {
+                throw Utils.error("Corrupt delta");
+            }
+        }
+        if (target_position != target_length) {
+            throw Utils.error("Corrupt delta");
+        }
+        return target;
+    }
+
+    /** Writes an INSERT instruction for the bytes of TARGET in the range [START, END), if it is not empty */
+    private static void writeInsert (ByteArrayOutputStream out, byte[] target, int start, int end) {
+        if (start < end) {
+            out.write(INSERT);
+            writeVarint(out, end - start);
+            out.write(target, start, end - start);
+        }
+    }
+
+    /** Returns the hash of the BLOCK_SIZE bytes of BYTES starting at START */
+    private static int blockHash (byte[] bytes, int start) {
+        int hash = 1;
+        for (int i = start; i < start + BLOCK_SIZE; i += 1) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash;
+    }
+
+    /** Writes the non-negative VALUE as a variable length integer, 7 bits at a time */
+    private static void writeVarint (ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Reads a variable length integer from BYTES at POSITION[0], and advances the position past it. Throws
+     *  an error if the integer is cut off or does not fit in a non-negative int.
+     */
+    private static int readVarint (byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (position[0] >= bytes.length || shift > 28) {
+                throw Utils.error("Corrupt delta");
+            }
+            int b = bytes[position[0]];
+            position[0] += 1;
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value > Integer.MAX_VALUE) {
+                    throw Utils.error("Corrupt delta");
+                }
+                return (int) value;
+            }
+            shift += 7;
+        }
+    }
+}
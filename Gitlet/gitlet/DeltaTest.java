@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of Delta : deltas rebuild their target, and corrupt deltas are rejected with an error rather
+ *  than read or written out of range.
+ *
+ *  @author Rishikesh S
+ */
+public class DeltaTest {
+
+    /** Returns SIZE random bytes */
+    private static byte[] randomBytes (Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Returns BASE with LENGTH random bytes inserted at OFFSET */
+    private static byte[] insert (Random random, byte[] base, int offset, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(base, 0, offset);
+        out.writeBytes(randomBytes(random, length));
+        out.write(base, offset, base.length - offset);
+        return out.toByteArray();
+    }
+
+    /** Asserts that applying the delta from BASE to TARGET to BASE gives TARGET back */
+    private static void assertRoundTrip (byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+    }
+
+    /** Asserts that applying DELTA to BASE fails with an error */
+    private static void assertCorrupt (byte[] base, byte[] delta) {
+        try {
+            Delta.apply(base, delta);
+            fail("Corrupt delta was applied");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testSimilarVersions () {
+        Random random = new Random(1);
+        byte[] base = randomBytes(random, 100000);
+        byte[] target = insert(random, base, 5000, 300);
+        target = Arrays.copyOfRange(target, 0, 90000);
+        target[70000] ^= 1;
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        assertTrue("Delta is not smaller than its target", delta.length < target.length / 10);
+    }
+
+    @Test
+    public void testEdgeCases () {
+        Random random = new Random(2);
+        byte[] empty = new byte[0];
+        byte[] small = randomBytes(random, 10);
+        byte[] large = randomBytes(random, 5000);
+        assertRoundTrip(empty, empty);
+        assertRoundTrip(empty, large);
+        assertRoundTrip(large, empty);
+        assertRoundTrip(small, large);
+        assertRoundTrip(large, small);
+        assertRoundTrip(large, large);
+        assertRoundTrip(large, randomBytes(random, 5000));
+    }
+
+    @Test
+    public void testRepeatedContents () {
+        byte[] base = new byte[4096];
+        byte[] target = new byte[10000];
+        Arrays.fill(base, (byte) 'a');
+        Arrays.fill(target, (byte) 'a');
+        assertRoundTrip(base, target);
+    }
+
+    @Test
+    public void testWrongBase () {
+        Random random = new Random(3);
+        byte[] base = randomBytes(random, 1000);
+        byte[] delta = Delta.create(base, insert(random, base, 10, 10));
+        assertCorrupt(randomBytes(random, 999), delta);
+    }
+
+    @Test
+    public void testTruncatedDelta () {
+        Random random = new Random(4);
+        byte[] base = randomBytes(random, 3000);
+        byte[] delta = Delta.create(base, insert(random, base, 1000, 200));
+        for (int length = 0; length < delta.length; length += 1) {
+            assertCorrupt(base, Arrays.copyOf(delta, length));
+        }
+    }
+
+    @Test
+    public void testCopyOutOfRange () {
+        byte[] base = new byte[100];
+        /* Base length 100, target length 50, then a copy of 50 bytes from offset 60 */
+        assertCorrupt(base, new byte[] {100, 50, 0, 60, 50});
+        /* A copy longer than the target */
+        assertCorrupt(base, new byte[] {100, 50, 0, 0, 60});
+        /* A copy whose offset plus length overflows an int */
+        assertCorrupt(base, new byte[] {100, 50, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 7, 50});
+    }
+
+    @Test
+    public void testInsertOutOfRange () {
+        byte[] base = new byte[10];
+        /* An insert of 20 bytes with only 3 bytes left in the delta */
+        assertCorrupt(base, new byte[] {10, 20, 1, 20, 1, 2, 3});
+    }
+
+    @Test
+    public void testUnknownInstruction () {
+        assertCorrupt(new byte[10], new byte[] {10, 5, 2, 5, 1, 2, 3, 4, 5});
+    }
+
+    @Test
+    public void testOversizedLengths () {
+        /* A varint which does not fit in an int */
+        assertCorrupt(new byte[0], new byte[] {0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f});
+        /* A varint which never ends */
+        assertCorrupt(new byte[0], new byte[] {0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+            (byte) 0x80, (byte) 0x80, 1});
+        /* A target far larger than the delta could describe */
+        assertCorrupt(new byte[0], new byte[] {0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07});
+    }
+
+    @Test
+    public void testRandomCorruption () {
+        Random random = new Random(5);
+        byte[] base = randomBytes(random, 2000);
+        byte[] delta = Delta.create(base, insert(random, base, 700, 100));
+        for (int i = 0; i < 2000; i += 1) {
+            byte[] corrupt = delta.clone();
+            corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            try {
+                Delta.apply(base, corrupt);
+            } catch (GitletException e) {
+                /* Either the delta still applies or it is rejected, but nothing else is thrown */
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/** Represents the file system metadata of a file in the working directory, along with the hash of its
+ *  contents at the time the metadata was recorded. If the metadata of a file has not changed since, the
+ *  file is assumed to be unchanged and the recorded hash is used instead of hashing the file again.
+ *
+ *  @author Rishikesh S
+ */
+public class FileStat implements Serializable {
+
+    /** Fixed so that metadata saved by older versions can still be deserialized */
+    private static final long serialVersionUID = -6532654512025092278L;
+
+    /** Granularity of modification times on the coarsest file systems we expect, in milliseconds */
+    private static final long MTIME_GRANULARITY = 2000;
+
+    /** Last modification time of the file, in milliseconds since the Unix Epoch */
+    private long mtime;
+
+    /** Size of the file in bytes */
+    private long size;
+
+    /** The inode of the file (as given by the file system), or null if the file system has none */
+    private String inode;
+
+    /** Hash of the contents of the file */
+    private String hash;
+
+    /** Time at which the file was hashed, in milliseconds since the Unix Epoch */
+    private long hashed_at;
+
+    /** Reads the metadata of FILE, whose contents have the hash HASH, and returns it. Returns null if
+     *  the metadata cannot be read.
+     */
+    public static FileStat of (File file, String hash) {
+        long now = System.currentTimeMillis();
+        BasicFileAttributes attributes = readAttributes(file);
+        if (attributes == null) {
+            return null;
+        }
+        FileStat stat = new FileStat();
+        stat.mtime = attributes.lastModifiedTime().toMillis();
+        stat.size = attributes.size();
+        stat.inode = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+        stat.hash = hash;
+        stat.hashed_at = now;
+        return stat;
+    }
+
+    /** Writes the metadata to OUT (see Codec) */
+    void encode (Codec.Writer out) {
+        out.writeSignedVarint(this.mtime);
+        out.writeVarint(this.size);
+        out.writeString(this.inode);
+        out.writeHash(this.hash);
+        out.writeSignedVarint(this.hashed_at);
+    }
+
+    /** Reads metadata written by encode from IN */
+    static FileStat decode (Codec.Reader in) {
+        FileStat stat = new FileStat();
+        stat.mtime = in.readSignedVarint();
+        stat.size = in.readVarint();
+        stat.inode = in.readString();
+        stat.hash = in.readHash();
+        stat.hashed_at = in.readSignedVarint();
+        return stat;
+    }
+
+    /** Getter method for the recorded hash */
+    public String getHash () {
+        return this.hash;
+    }
+
+    /** Returns true if FILE still has the recorded metadata, in which case its contents are assumed to
+     *  still have the recorded hash. A file which was modified shortly before it was hashed could have
+     *  been modified again within the same timestamp, so such files never match.
+     */
+    public boolean matches (File file) {
+        return this.matches(readAttributes(file));
+    }
+
+    /** Returns true if ATTRIBUTES, the current metadata of the file (or null if it does not exist), are
+     *  the recorded metadata. See matches(File).
+     */
+    public boolean matches (BasicFileAttributes attributes) {
+        if (this.mtime + MTIME_GRANULARITY >= this.hashed_at) {
+            return false;
+        }
+        if (attributes == null) {
+            return false;
+        }
+        String current_inode = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+        return attributes.lastModifiedTime().toMillis() == this.mtime
+                && attributes.size() == this.size
+                && Objects.equals(current_inode, this.inode);
+    }
+
+    /** Reads the metadata of FILE, or returns null if it cannot be read */
+    static BasicFileAttributes readAttributes (File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/** Checks the integrity of an object store.
+ *  Every copy of every object (loose, and in each pack) is rehashed from the form in which it is stored
+ *  and compared with its name : commits and trees from their encoding, blobs from their contents, deltas
+ *  from the blob they rebuild and chunk lists from the blob their chunks join into. Large loose files are
+ *  memory mapped and packs are already mapped, so contents are decompressed and hashed straight from the
+ *  mapping. The objects are split into batches of about BATCH_BYTES bytes which are checked on
+ *  fsck.threads threads (see Config).
+ *
+ *  The objects which an intact copy refers to must be in the store : the parents and tree of a commit (or
+ *  the blobs of a commit made before trees), the blobs and subtrees of a tree, the base of a delta and the
+ *  chunks of a chunk list, as well as the commits the branches and HEAD point to.
+ *
+ *  The report has one line per problem, with tab separated fields, followed by a summary line :
+ *  <pre>
+ *  corrupt  TYPE HASH WHERE DETAIL         (TYPE is commit, tree, blob, delta or chunked)
+ *  missing  TYPE HASH REFERRER_TYPE REFERRER  (TYPE is commit, tree or blob)
+ *  checked  OBJECTS BYTES CORRUPT MISSING
+ *  </pre>
+ *  WHERE is "loose" or the name of the pack file, and REFERRER_TYPE is commit, tree, delta, chunked,
+ *  branch (REFERRER being the branch name) or HEAD.
+ *
+ *  @author Rishikesh S
+ */
+public class Fsck {
+
+    /** Approximate number of stored bytes checked by a single task */
+    private static final long BATCH_BYTES = 16L * 1024 * 1024;
+
+    /** Maximum number of objects checked by a single task */
+    private static final int BATCH_OBJECTS = 1024;
+
+    /** Names of the object types in the report, indexed by type (see ObjectStore) */
+    private static final String[] TYPE_NAMES = {null, "commit", "blob", "delta", "tree", "chunked"};
+
+    /** The store to check */
+    private final ObjectStore objects;
+
+    /** Number of worker threads */
+    private final int threads;
+
+    /** Represents a stored copy of an object and where it was found */
+    private static class Copy {
+        final PackFile.Source source;
+        final String where;
+
+        Copy (PackFile.Source source, String where) {
+            this.source = source;
+            this.where = where;
+        }
+    }
+
+    /** The results of checking a batch of copies */
+    private static class Result {
+        final List<String> corrupt = new ArrayList<>();
+        final List<String> missing = new ArrayList<>();
+        long bytes;
+    }
+
+    /** Constructor. The number of worker threads is given by the fsck.threads setting */
+    public Fsck (ObjectStore objects) {
+        this.objects = objects;
+        this.threads = Math.max(1, Config.getInt("fsck.threads", Parallel.DEFAULT_THREADS));
+    }
+
+    /** Checks the store, where HEADS maps the names of the branches to the commits they point to and HEAD
+     *  is the commit HEAD points to, and returns the lines of the report.
+     */
+    public List<String> check (Map<String, String> heads, String head) {
+        List<Copy> copies = new ArrayList<>();
+        List<String> report = new ArrayList<>();
+        for (PackFile.Source s : this.objects.looseObjects()) {
+            copies.add(new Copy(s, "loose"));
+        }
+        for (PackFile pack : this.objects.getPacks()) {
+            String name = pack.getPackFile().getName();
+            for (int i = 0; i < pack.size(); i += 1) {
+                String hash = pack.hashAt(i);
+                try {
+                    copies.add(new Copy(new PackFile.Source(hash, pack.typeAt(i), pack.sliceAt(i)), name));
+                } catch (GitletException e) {
+                    report.add(String.join("\t", "corrupt", "object", hash, name, "offset out of the pack"));
+                }
+            }
+        }
+
+        /* The objects are looked up in these sets rather than in the store, so a corrupt copy still counts as
+         * present and is only reported once
+         */
+        Set<String> commits = new HashSet<>();
+        Set<String> trees = new HashSet<>();
+        Set<String> blobs = new HashSet<>();
+        for (Copy c : copies) {
+            if (c.source.type == ObjectStore.COMMIT) {
+                commits.add(c.source.hash);
+            }
+            else if (c.source.type == ObjectStore.TREE) {
+                trees.add(c.source.hash);
+            }
+            else {
+                blobs.add(c.source.hash);
+            }
+        }
+
+        List<Callable<Result>> tasks = new ArrayList<>();
+        int start = 0;
+        long batch_bytes = 0;
+        for (int i = 0; i < copies.size(); i += 1) {
+            batch_bytes += copies.get(i).source.length();
+            if (batch_bytes >= BATCH_BYTES || i + 1 - start >= BATCH_OBJECTS || i == copies.size() - 1) {
+                List<Copy> batch = copies.subList(start, i + 1);
+                tasks.add(() -> this.checkBatch(batch, commits, trees, blobs));
+                start = i + 1;
+                batch_bytes = 0;
+            }
+        }
+        long bytes = 0;
+        int corrupt = report.size();
+        List<Result> results = Parallel.run(tasks, this.threads);
+        for (Result r : results) {
+            report.addAll(r.corrupt);
+            corrupt += r.corrupt.size();
+            bytes += r.bytes;
+        }
+        /* An object missing from several objects is reported once for each of them, but the copies of the
+         * same object only report it once
+         */
+        LinkedHashSet<String> missing = new LinkedHashSet<>();
+        for (Result r : results) {
+            missing.addAll(r.missing);
+        }
+        for (Map.Entry<String, String> entry : heads.entrySet()) {
+            if (!commits.contains(entry.getValue())) {
+                missing.add(String.join("\t", "missing", "commit", entry.getValue(), "branch", entry.getKey()));
+            }
+        }
+        if (head != null && !commits.contains(head)) {
+            missing.add(String.join("\t", "missing", "commit", head, "HEAD", "HEAD"));
+        }
+        report.addAll(missing);
+        report.add(String.join("\t", "checked", Integer.toString(copies.size()), Long.toString(bytes),
+                Integer.toString(corrupt), Integer.toString(missing.size())));
+        return report;
+    }
+
+    /** Checks the copies BATCH against their hashes, and the objects the intact ones refer to against the
+     *  sets of COMMITS, TREES and BLOBS in the store
+     */
+    private Result checkBatch (List<Copy> batch, Set<String> commits, Set<String> trees, Set<String> blobs) {
+        Result result = new Result();
+        for (Copy c : batch) {
+            PackFile.Source s = c.source;
+            String type_name = s.type > 0 && s.type < TYPE_NAMES.length ? TYPE_NAMES[s.type] : "object";
+            List<String[]> references = new ArrayList<>();
+            String actual;
+            try {
+                result.bytes += s.length();
+                if (s.type == ObjectStore.COMMIT) {
+                    byte[] bytes = Compression.decompress(s.read());
+                    actual = Utils.sha1((Object) bytes);
+                    Commit commit = Commit.fromBytes(bytes);
+                    references.add(new String[] {"commit", commit.getParent()});
+                    references.add(new String[] {"commit", commit.getSecondParent()});
+                    if (commit.isLegacy()) {
+                        for (String blob_hash : commit.getReferencedBlobs().values()) {
+                            references.add(new String[] {"blob", blob_hash});
+                        }
+                    }
+                    else {
+                        references.add(new String[] {"tree", commit.getTree()});
+                    }
+                }
+                else if (s.type == ObjectStore.TREE) {
+                    byte[] bytes = Compression.decompress(s.read());
+                    actual = Utils.sha1((Object) bytes);
+                    Tree tree = Tree.fromBytes(bytes);
+                    for (String blob_hash : tree.getBlobHashes()) {
+                        references.add(new String[] {"blob", blob_hash});
+                    }
+                    for (String subtree_hash : tree.getSubtreeHashes()) {
+                        references.add(new String[] {"tree", subtree_hash});
+                    }
+                }
+                else if (s.type == ObjectStore.BLOB || s.type == ObjectStore.DELTA
+                        || s.type == ObjectStore.CHUNKED) {
+                    for (String blob_hash : ObjectStore.blobDependencies(s)) {
+                        references.add(new String[] {"blob", blob_hash});
+                    }
+                    /* A delta or chunk list whose base or chunks are missing cannot be rehashed */
+                    if (!this.allPresent(references, commits, trees, blobs)) {
+                        this.addMissing(result, references, commits, trees, blobs, type_name, s.hash);
+                        continue;
+                    }
+                    actual = this.objects.blobHash(s);
+                }
+                else {
+                    result.corrupt.add(String.join("\t", "corrupt", type_name, s.hash, c.where, "unknown type"));
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                result.corrupt.add(String.join("\t", "corrupt", type_name, s.hash, c.where,
+                        "unreadable : " + e.getClass().getSimpleName()));
+                continue;
+            }
+            if (!actual.equals(s.hash)) {
+                result.corrupt.add(String.join("\t", "corrupt", type_name, s.hash, c.where, "hash " + actual));
+                continue;
+            }
+            this.addMissing(result, references, commits, trees, blobs, type_name, s.hash);
+        }
+        return result;
+    }
+
+    /** Returns true if all the objects in REFERENCES (pairs of type and hash) are present */
+    private boolean allPresent (List<String[]> references, Set<String> commits, Set<String> trees,
+                                Set<String> blobs) {
+        for (String[] r : references) {
+            if (r[1] != null && !setOf(r[0], commits, trees, blobs).contains(r[1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reports the objects in REFERENCES which are not present, as referred to by the object HASH of the
+     *  type TYPE_NAME
+     */
+    private void addMissing (Result result, List<String[]> references, Set<String> commits, Set<String> trees,
+                             Set<String> blobs, String type_name, String hash) {
+        for (String[] r : references) {
+            if (r[1] != null && !setOf(r[0], commits, trees, blobs).contains(r[1])) {
+                result.missing.add(String.join("\t", "missing", r[0], r[1], type_name, hash));
+            }
+        }
+    }
+
+    /** Returns the set of COMMITS, TREES or BLOBS which holds objects of the given type */
+    private static Set<String> setOf (String type, Set<String> commits, Set<String> trees, Set<String> blobs) {
+        return type.equals("commit") ? commits : type.equals("tree") ? trees : blobs;
+    }
+}
@@ -0,0 +1,201 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Deletes the objects which can no longer be reached from the branches of a repository.
+ *  The mark phase first walks the history from the branch heads and HEAD through the commit graph, which
+ *  only reads the graph records. The trees of the commits found are then walked by fork/join tasks (on
+ *  gc.threads threads, see Config), every tree being claimed in a shared set by the first task to reach it,
+ *  so that the trees shared between commits are only read once. A blob marks the blobs it is stored against
+ *  (the base of a delta or its chunks) along with it.
+ *
+ *  The sweep (see ObjectStore.prune) then deletes the objects which were not marked, unless they were
+ *  written less than gc.grace seconds ago (two weeks by default) : an object which was just written by a
+ *  command which has not updated its branch yet, or which was just received from a remote, is not
+ *  reachable yet either. If commits were deleted, the commit graph and its indexes are rebuilt.
+ *
+ *  @author Rishikesh S
+ */
+public class GarbageCollector {
+
+    /** Default grace period, in seconds */
+    private static final long DEFAULT_GRACE = 14L * 24 * 60 * 60;
+
+    /** The store to collect */
+    private final ObjectStore objects;
+
+    /** The commit graph of the store */
+    private final CommitGraph graph;
+
+    /** Number of worker threads marking trees */
+    private final int threads;
+
+    /** The hashes of the objects marked as reachable */
+    private final Set<String> reachable = ConcurrentHashMap.newKeySet();
+
+    /** The hashes of the blobs marked as reachable. Blobs are claimed separately, as a blob may have the
+     *  same contents (and so the same hash) as a tree.
+     */
+    private final Set<String> blobs = ConcurrentHashMap.newKeySet();
+
+    /** Number of commits marked as reachable */
+    private int commit_count;
+
+    /** Constructor. The number of worker threads is given by the gc.threads setting */
+    public GarbageCollector (ObjectStore objects, CommitGraph graph) {
+        this.objects = objects;
+        this.graph = graph;
+        this.threads = Math.max(1, Config.getInt("gc.threads", Parallel.DEFAULT_THREADS));
+    }
+
+    /** Marks the objects reachable from the commits ROOTS, then deletes the others which are older than the
+     *  grace period. Returns what was deleted.
+     */
+    public ObjectStore.Pruned collect (Collection<String> roots) {
+        this.mark(roots);
+        long grace = Math.max(0, Config.getLong("gc.grace", DEFAULT_GRACE));
+        ObjectStore.Pruned pruned = this.objects.prune(this.reachable,
+                System.currentTimeMillis() - grace * 1000);
+        if (pruned.commits > 0) {
+            this.graph.rebuildAside();
+        }
+        return pruned;
+    }
+
+    /** Returns the number of objects marked as reachable */
+    public int reachableCount () {
+        return this.reachable.size();
+    }
+
+    /** Returns the number of commits marked as reachable */
+    public int reachableCommitCount () {
+        return this.commit_count;
+    }
+
+    /** Marks the commits reachable from ROOTS, and everything they refer to */
+    private void mark (Collection<String> roots) {
+        List<String> commits = new ArrayList<>();
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        for (String root : roots) {
+            if (root != null) {
+                pending.push(root);
+            }
+        }
+        while (!pending.isEmpty()) {
+            String hash = pending.pop();
+            if (!this.reachable.add(hash)) {
+                continue;
+            }
+            commits.add(hash);
+            CommitGraph.Entry entry = this.graph.get(hash);
+            String[] parents;
+            if (entry != null) {
+                parents = new String[] {entry.parent, entry.second_parent};
+            }
+            else {
+                Commit commit = this.objects.readCommit(hash);
+                parents = new String[] {commit.getParent(), commit.getSecondParent()};
+            }
+            for (String parent : parents) {
+                if (parent != null) {
+                    pending.push(parent);
+                }
+            }
+        }
+        this.commit_count = commits.size();
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            pool.invoke(new MarkCommits(commits, 0, commits.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Marks the blob BLOB_HASH and the blobs it is stored against */
+    private void markBlob (String blob_hash) {
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        pending.push(blob_hash);
+        while (!pending.isEmpty()) {
+            String hash = pending.pop();
+            if (this.blobs.add(hash)) {
+                this.reachable.add(hash);
+                pending.addAll(this.objects.blobDependencies(hash));
+            }
+        }
+    }
+
+    /** Marks the trees of a range of commits, splitting the range in halves until it is small */
+    private class MarkCommits extends RecursiveAction {
+        private static final long serialVersionUID = 5148848824776117011L;
+        private static final int MIN_RANGE = 64;
+        private final List<String> commits;
+        private final int start;
+        private final int end;
+
+        MarkCommits (List<String> commits, int start, int end) {
+            this.commits = commits;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute () {
+            if (this.end - this.start > MIN_RANGE) {
+                int mid = (this.start + this.end) >>> 1;
+                invokeAll(new MarkCommits(this.commits, this.start, mid),
+                        new MarkCommits(this.commits, mid, this.end));
+                return;
+            }
+            List<MarkTree> trees = new ArrayList<>();
+            for (int i = this.start; i < this.end; i += 1) {
+                Commit commit = objects.readCommit(this.commits.get(i));
+                /* A commit made before trees lists its blobs, and its tree is not saved */
+                if (commit.isLegacy()) {
+                    for (String blob_hash : commit.getReferencedBlobs().values()) {
+                        markBlob(blob_hash);
+                    }
+                    continue;
+                }
+                String tree_hash = commit.getTree();
+                if (tree_hash != null && reachable.add(tree_hash)) {
+                    trees.add(new MarkTree(tree_hash));
+                }
+            }
+            invokeAll(trees);
+        }
+    }
+
+    /** Marks the blobs of a tree, which has already been claimed, and forks a task for each of its
+     *  subtrees which no other task has claimed
+     */
+    private class MarkTree extends RecursiveAction {
+        private static final long serialVersionUID = 9168186761825952670L;
+        private final String tree_hash;
+
+        MarkTree (String tree_hash) {
+            this.tree_hash = tree_hash;
+        }
+
+        @Override
+        protected void compute () {
+            Tree tree = objects.readTree(this.tree_hash);
+            for (String blob_hash : tree.getBlobHashes()) {
+                markBlob(blob_hash);
+            }
+            List<MarkTree> subtrees = new ArrayList<>();
+            for (String subtree_hash : tree.getSubtreeHashes()) {
+                if (reachable.add(subtree_hash)) {
+                    subtrees.add(new MarkTree(subtree_hash));
+                }
+            }
+            invokeAll(subtrees);
+        }
+    }
+}
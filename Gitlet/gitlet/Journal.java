@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Represents the journal of an update of the working directory and the branches (a checkout of a
+ *  branch, a reset or a merge), which is written before the working directory is touched and deleted
+ *  once the update has been saved.
+ *  The journal records the whole outcome of the update : the files to delete, the files to write with
+ *  the hashes of their blobs, and where HEAD and the current branch point afterwards. If a command is
+ *  interrupted half way through the update, the next command finds the journal and rolls the update
+ *  forward before doing anything else, so the working directory is never left half updated.
+ *  The journal is encoded like the other objects (see Codec).
+ *
+ *  @author Rishikesh S
+ */
+public class Journal implements Serializable {
+
+    /** Fixed so that a journal written with Java serialization by an older version can still be read */
+    private static final long serialVersionUID = 2647383617369644374L;
+
+    /** The commit HEAD points to after the update */
+    private final String head;
+
+    /** The branch which is current after the update, and which points to HEAD */
+    private final String branch;
+
+    /** The files to be deleted from the working directory */
+    private final TreeSet<String> deletions;
+
+    /** The files to be written to the working directory and the hashes of their blobs */
+    private final TreeMap<String, String> writes;
+
+    /** Constructor */
+    public Journal (String head, String branch, TreeSet<String> deletions, TreeMap<String, String> writes) {
+        this.head = head;
+        this.branch = branch;
+        this.deletions = deletions;
+        this.writes = writes;
+    }
+
+    /** Getter methods for the instance variables */
+    public String getHead () {
+        return this.head;
+    }
+
+    public String getBranch () {
+        return this.branch;
+    }
+
+    public TreeSet<String> getDeletions () {
+        return this.deletions;
+    }
+
+    public TreeMap<String, String> getWrites () {
+        return this.writes;
+    }
+
+    /** Returns the encoding of the journal (see Codec) */
+    public byte[] toBytes () {
+        Codec.Writer out = new Codec.Writer(Codec.JOURNAL);
+        out.writeHash(this.head);
+        out.writeString(this.branch);
+        out.writeVarint(this.deletions.size());
+        for (String file_name : this.deletions) {
+            out.writeString(file_name);
+        }
+        out.writeVarint(this.writes.size());
+        for (Map.Entry<String, String> entry : this.writes.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeHash(entry.getValue());
+        }
+        return out.toBytes();
+    }
+
+    /** Returns the journal encoded in BYTES, which may also have been written with Java serialization */
+    public static Journal fromBytes (byte[] bytes) {
+        if (Codec.isSerialized(bytes)) {
+            return Codec.deserialize(bytes, Journal.class);
+        }
+        Codec.Reader in = Codec.reader(bytes, Codec.JOURNAL);
+        String head = in.readHash();
+        String branch = in.readString();
+        TreeSet<String> deletions = new TreeSet<>();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            deletions.add(in.readString());
+        }
+        TreeMap<String, String> writes = new TreeMap<>();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            String file_name = in.readString();
+            writes.put(file_name, in.readHash());
+        }
+        return new Journal(head, branch, deletions, writes);
+    }
+
+    /** Returns true if an interrupted update has left a journal behind */
+    public static boolean exists () {
+        return Repository.JOURNAL_FILE.exists();
+    }
+
+    /** Reads the journal left behind by an interrupted update */
+    public static Journal read () {
+        return fromBytes(Utils.readContents(Repository.JOURNAL_FILE));
+    }
+
+    /** Writes the journal. It is written to a temporary file which is then renamed, so a journal is either
+     *  complete or missing.
+     */
+    public void write () {
+        File temp = new File(Repository.JOURNAL_FILE.getPath() + ".tmp");
+        Utils.writeContents(temp, (Object) this.toBytes());
+        try {
+            Files.move(temp.toPath(), Repository.JOURNAL_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            throw Utils.error("Error when writing the journal");
+        }
+    }
+
+    /** Deletes the journal once the update is complete */
+    public static void delete () {
+        Repository.JOURNAL_FILE.delete();
+    }
+}
@@ -1,5 +1,6 @@
 package gitlet;
 
+import java.util.Arrays;
 
 /**
  * Driver class for Gitlet, a subset of the Git version-control system.
@@ -19,8 +20,21 @@ public class Main {
             System.exit(0);
         }
 
+        /* Forwarding the command to the daemon of this repository, if one is running */
+        if (Daemon.forward(args)) {
+            System.exit(0);
+        }
+
         Repository repo = new Repository();
+        dispatch(repo, args);
+        System.exit(0);
+    }
 
+    /**
+     * Runs the command given by ARGS (which must not be empty) against REPO. Used both for a command run from the
+     * command line and for the commands received by the daemon, so commands must return instead of exiting.
+     */
+    static void dispatch(Repository repo, String[] args) {
         String firstArg = args[0];
         switch (firstArg) {
             /*  Creates a new Gitlet vcs in the current directory. Should abort with an error message
@@ -37,13 +51,14 @@ public class Main {
                 }
                 break;
             }
-            /*  Adds the given file to the staging area. Staging an already staged file overwrites the previous entry
+            /*  Adds the given files to the staging area. Staging an already staged file overwrites the previous entry
              *  in the staging area. If the current version of the file is identical to the version in the current
-             *  commit, and remove it from the staging area if it is already there.
+             *  commit, and remove it from the staging area if it is already there. Takes any number of files,
+             *  directories and glob patterns.
              */
             case "add": {
-                if (repo.checkInitialized() && validateCommand(2, args)) {
-                    repo.add(args[1]);
+                if (repo.checkInitialized() && args.length >= 2) {
+                    repo.add(Arrays.copyOfRange(args, 1, args.length));
                 }
                 else {
                     System.out.println("Incorrect operands.");
@@ -104,12 +119,33 @@ public class Main {
                 break;
             }
             /*  Prints out the ids of all commits that have the given commit message. If no
-             *  such commit exists, prints out an error.
+             *  such commit exists, prints out an error. Also supports :
+             *  find --grep TEXT ---- commits whose message contains TEXT
+             *  find --since DATE [--until DATE] / find --until DATE ---- commits made between the given dates
              */
             case "find": {
-                if (repo.checkInitialized() && validateCommand(2, args)) {
+                if (!repo.checkInitialized()) {
+                    System.out.println("Incorrect operands.");
+                }
+                else if (validateCommand(2, args)) {
                     repo.find(args[1]);
                 }
+                else if (validateCommand(3, args) && args[1].equals("--grep")) {
+                    repo.findContaining(args[2]);
+                }
+                else if ((validateCommand(3, args) || validateCommand(5, args)) && isDateRange(args)) {
+                    String since = null;
+                    String until = null;
+                    for (int i = 1; i < args.length; i += 2) {
+                        if (args[i].equals("--since")) {
+                            since = args[i + 1];
+                        }
+                        else {
+                            until = args[i + 1];
+                        }
+                    }
+                    repo.findBetween(since, until);
+                }
                 else {
                     System.out.println("Incorrect operands.");
                 }
@@ -168,12 +204,195 @@ public class Main {
                 }
                 break;
             }
+            /* Checks out all the files tracked by the given commit, removes the tracked files that are not present
+               in that commit and moves the current branch's head to that commit
+             */
+            case "reset" : {
+                if (repo.checkInitialized() && validateCommand(2, args)) {
+                    repo.reset(args[1]);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Merges files from the given branch into the current branch */
+            case "merge" : {
+                if (repo.checkInitialized() && validateCommand(2, args)) {
+                    repo.merge(args[1]);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Folds all the loose commits and blobs into a single pack file, so that the repository
+               does not need one file per object
+             */
+            case "repack" : {
+                if (repo.checkInitialized() && validateCommand(1, args)) {
+                    repo.repack();
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Deletes the commits, trees and blobs which cannot be reached from any branch, once they are
+               older than the grace period
+             */
+            case "gc" : {
+                if (repo.checkInitialized() && validateCommand(1, args)) {
+                    repo.gc();
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Checks every object against its hash and that the objects they refer to exist, and prints a
+               tab separated report of the problems found
+             */
+            case "fsck" : {
+                if (repo.checkInitialized() && validateCommand(1, args)) {
+                    repo.fsck();
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Saves the path of the .gitlet directory of another repository under the given name */
+            case "add-remote" : {
+                if (repo.checkInitialized() && validateCommand(3, args)) {
+                    repo.addRemote(args[1], args[2]);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Forgets the given remote */
+            case "rm-remote" : {
+                if (repo.checkInitialized() && validateCommand(2, args)) {
+                    repo.rmRemote(args[1]);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Copies the commits of the given branch of a remote which this repository does not have, and
+               points the branch [remote name]/[branch name] at them
+             */
+            case "fetch" : {
+                if (repo.checkInitialized() && validateCommand(3, args)) {
+                    repo.fetch(args[1], args[2]);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Copies the commits of the current branch which a remote does not have, and moves the given
+               branch of the remote to the current head
+             */
+            case "push" : {
+                if (repo.checkInitialized() && validateCommand(3, args)) {
+                    repo.push(args[1], args[2]);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Fetches the given branch of a remote and merges it into the current branch */
+            case "pull" : {
+                if (repo.checkInitialized() && validateCommand(3, args)) {
+                    repo.pull(args[1], args[2]);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Prints the number of objects in the object cache and how many reads it served */
+            case "cache-stats" : {
+                if (repo.checkInitialized() && validateCommand(1, args)) {
+                    repo.cacheStats();
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Runs the commands read from the given file (or the standard input), one per line, in this process.
+               The repo state is only saved at checkpoints and at the end.
+             */
+            case "batch" : {
+                if (args.length <= 2) {
+                    Batch.run(repo, args.length == 2 ? args[1] : null);
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Runs a daemon which keeps the repository loaded and runs the commands forwarded to it over a
+               Unix socket, until it receives daemon stop. Only reached by daemon stop when no daemon is running.
+             */
+            case "daemon" : {
+                if (repo.checkInitialized() && validateCommand(1, args)) {
+                    Daemon.serve(repo);
+                }
+                else if (repo.checkInitialized() && validateCommand(2, args) && args[1].equals("stop")) {
+                    System.out.println("No daemon is running.");
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
+            /* Watches the working directory and journals the paths which change, so that status, add and
+               checkout only look at those, until watch stop.
+             */
+            case "watch" : {
+                if (repo.checkInitialized() && validateCommand(1, args)) {
+                    Watcher.run();
+                }
+                else if (repo.checkInitialized() && validateCommand(2, args) && args[1].equals("stop")) {
+                    Watcher.stop();
+                }
+                else {
+                    System.out.println("Incorrect operands.");
+                }
+                break;
+            }
             /* To be executed when a wrong command is entered */
             default: {
                 System.out.println("No command with that name exists.");
             }
         }
-        System.exit(0);
+    }
+
+    /**
+     * Function that checks that the arguments of find are of the form --since DATE and/or --until DATE
+     */
+    private static boolean isDateRange(String[] args) {
+        boolean since = false;
+        boolean until = false;
+        for (int i = 1; i < args.length; i += 2) {
+            if (args[i].equals("--since") && !since) {
+                since = true;
+            }
+            else if (args[i].equals("--until") && !until) {
+                until = true;
+            }
+            else {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** A cache of the objects read from an object store (commits, trees and blobs), keyed by their hashes.
+ *  The cache holds at most a given number of bytes, counting the size of the stored form of commits and
+ *  trees and the contents of blobs. When it grows past that budget, the least recently used objects are
+ *  evicted. Objects larger than a quarter of the budget are never cached, so that reading a single large
+ *  blob does not evict everything else. Objects are immutable once written, so cached objects never have
+ *  to be invalidated. The cache can be used by several threads at once.
+ *
+ *  @author Rishikesh S
+ */
+class ObjectCache {
+
+    /** Represents a cached object and its size */
+    private static class Entry {
+        final Object value;
+        final long size;
+
+        Entry (Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /** Maximum number of bytes held in the cache */
+    private final long capacity;
+
+    /** The cached objects, in least recently used order */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Number of bytes held in the cache */
+    private long bytes;
+
+    /** Number of lookups which found their object, and which did not */
+    private long hits;
+    private long misses;
+
+    /** Constructor */
+    ObjectCache (long capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /** Returns the cached object with the given hash, or null if it is not cached (or is not of type TYPE) */
+    synchronized <T> T get (String hash, Class<T> type) {
+        Entry entry = this.entries.get(hash);
+        if (entry == null || !type.isInstance(entry.value)) {
+            this.misses += 1;
+            return null;
+        }
+        this.hits += 1;
+        return type.cast(entry.value);
+    }
+
+    /** Adds the object VALUE, which takes SIZE bytes, to the cache, evicting the least recently used
+     *  objects if the cache grows too large.
+     */
+    synchronized void put (String hash, Object value, long size) {
+        if (size > this.capacity / 4) {
+            return;
+        }
+        Entry previous = this.entries.put(hash, new Entry(value, size));
+        this.bytes += size - (previous == null ? 0 : previous.size);
+        Iterator<Entry> eldest = this.entries.values().iterator();
+        while (this.bytes > this.capacity) {
+            this.bytes -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    /** Getter methods for the statistics of the cache */
+    synchronized long getHits () {
+        return this.hits;
+    }
+
+    synchronized long getMisses () {
+        return this.misses;
+    }
+
+    synchronized int getCount () {
+        return this.entries.size();
+    }
+
+    synchronized long getBytes () {
+        return this.bytes;
+    }
+
+    long getCapacity () {
+        return this.capacity;
+    }
+}
@@ -0,0 +1,836 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** Represents the object store of a repository.
+ *  Objects (commits, trees and blobs) are first written "loose", as one file per object in COMMIT_DIR,
+ *  TREES_DIR or BLOBS_DIR. The repack command later folds the loose objects into a pack (see PackFile). Reads look
+ *  at the loose objects first and then at the packs, so callers do not have to know where an object
+ *  is stored.
+ *
+ *  A new version of a file may be stored as a delta against the previous version (see Delta) in
+ *  DELTA_DIR. The chains of deltas are kept short.
+ *
+ *  Files of at least chunk.threshold bytes (see Config) are split into chunks at boundaries defined by
+ *  their contents (see Chunker). Each chunk is stored as a blob of its own, and the file as the list of
+ *  its chunks in CHUNKED_DIR, so the chunks shared by several files or several versions of a file are only
+ *  stored once. Such files are written back chunk by chunk, without being read into memory.
+ *
+ *  Every object is stored in the form given by Compression : compressed, unless it is small or does not
+ *  compress. Blobs are written from staged files, which are already in that form.
+ *
+ *  Recently read objects are kept in an ObjectCache of cache.bytes bytes (see Config), so that reading
+ *  the same commits, trees and blobs again (within a command, or across the commands run by a batch or
+ *  by the daemon) neither goes to the disk nor applies the same deltas again and again.
+ *
+ *  @author Rishikesh S
+ */
+public class ObjectStore {
+
+    /** Type of a commit object */
+    public static final byte COMMIT = 1;
+
+    /** Type of a blob object */
+    public static final byte BLOB = 2;
+
+    /** Type of a blob object stored as a delta against another blob */
+    public static final byte DELTA = 3;
+
+    /** Type of a tree object */
+    public static final byte TREE = 4;
+
+    /** Type of a blob object stored as the list of its chunks, which are stored as blobs */
+    public static final byte CHUNKED = 5;
+
+    /** Maximum number of deltas which have to be applied to reconstruct a blob */
+    private static final int MAX_CHAIN_DEPTH = 10;
+
+    /** Size of the header of a delta object : hash of the base blob and depth of the delta chain */
+    private static final int DELTA_HEADER_SIZE = Utils.UID_BYTES + 1;
+
+    /** Maximum size of the blobs which are stored as deltas, as deltas are computed in memory */
+    private static final long MAX_DELTA_SIZE = 16L * 1024 * 1024;
+
+    /** Maximum size of the blobs which are folded into packs. Larger blobs stay loose */
+    private static final long MAX_PACKED_SIZE = 64L * 1024 * 1024;
+
+    /** Size after which a new pack is started when repacking, as packs are memory mapped */
+    private static final long MAX_PACK_SIZE = 1024L * 1024 * 1024;
+
+    /** Default maximum number of bytes held in the object cache */
+    private static final long DEFAULT_CACHE_BYTES = 32L * 1024 * 1024;
+
+    /** Default size from which blobs are split into chunks. Smaller blobs may be stored as deltas instead */
+    private static final long DEFAULT_CHUNK_THRESHOLD = 16L * 1024 * 1024;
+
+    /** Default average size of the chunks */
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /** Size of the header of a chunk list : size of the blob and number of chunks */
+    private static final int CHUNKS_HEADER_SIZE = 12;
+
+    /** Size of an entry of a chunk list : hash and length of the chunk */
+    private static final int CHUNK_ENTRY_SIZE = Utils.UID_BYTES + 4;
+
+    /** Directory storing the loose commits */
+    private final File commit_dir;
+
+    /** Directory storing the loose trees */
+    private final File trees_dir;
+
+    /** Directory storing the loose blobs */
+    private final File blobs_dir;
+
+    /** Directory storing the loose delta blobs */
+    private final File delta_dir;
+
+    /** Directory storing the loose chunk lists of chunked blobs */
+    private final File chunked_dir;
+
+    /** Directory storing the packs */
+    private final File pack_dir;
+
+    /** Cache of the recently read objects, created lazily as its size is read from the config */
+    private ObjectCache cache;
+
+    /** The packs of this store, loaded lazily. Null if not loaded yet */
+    private List<PackFile> packs;
+
+    /** Modification time of the pack directory when the packs were loaded */
+    private long packs_loaded_at;
+
+    /** Constructor */
+    public ObjectStore (File commit_dir, File trees_dir, File blobs_dir, File delta_dir, File chunked_dir,
+                        File pack_dir) {
+        this.commit_dir = commit_dir;
+        this.trees_dir = trees_dir;
+        this.blobs_dir = blobs_dir;
+        this.delta_dir = delta_dir;
+        this.chunked_dir = chunked_dir;
+        this.pack_dir = pack_dir;
+    }
+
+    /** Drops the loaded packs if packs were added or removed (by another process) since they were loaded.
+     *  Used by long running processes (the daemon).
+     */
+    public synchronized void refresh () {
+        if (this.packs != null && this.pack_dir.lastModified() != this.packs_loaded_at) {
+            this.packs = null;
+        }
+    }
+
+    /** Returns true if the store contains the given commit */
+    public boolean hasCommit (String hash) {
+        return Utils.join(this.commit_dir, hash).exists() || this.findPacked(hash, COMMIT) != null;
+    }
+
+    /** Returns true if the store contains the given tree */
+    public boolean hasTree (String hash) {
+        return Utils.join(this.trees_dir, hash).exists() || this.findPacked(hash, TREE) != null;
+    }
+
+    /** Returns true if the store contains the given blob, either in full, as a delta or in chunks */
+    public boolean hasBlob (String hash) {
+        return Utils.join(this.blobs_dir, hash).exists() || Utils.join(this.delta_dir, hash).exists()
+                || Utils.join(this.chunked_dir, hash).exists()
+                || this.findPacked(hash, BLOB, DELTA, CHUNKED) != null;
+    }
+
+    /** Reads the given commit from the store. The commit may be shared with other readers, so it must not
+     *  be modified.
+     */
+    public Commit readCommit (String hash) {
+        Commit commit = this.cache().get(hash, Commit.class);
+        if (commit != null) {
+            return commit;
+        }
+        File loose = Utils.join(this.commit_dir, hash);
+        byte[] bytes = loose.exists() ? readStored(loose) : this.readPacked(COMMIT, hash);
+        commit = Commit.fromBytes(bytes);
+        this.cache().put(hash, commit, bytes.length);
+        return commit;
+    }
+
+    /** Reads the given tree from the store. The tree may be shared with other readers, so it must not be
+     *  modified.
+     */
+    public Tree readTree (String hash) {
+        Tree tree = this.cache().get(hash, Tree.class);
+        if (tree != null) {
+            return tree;
+        }
+        File loose = Utils.join(this.trees_dir, hash);
+        byte[] bytes = loose.exists() ? readStored(loose) : this.readPacked(TREE, hash);
+        tree = Tree.fromBytes(bytes);
+        this.cache().put(hash, tree, bytes.length);
+        return tree;
+    }
+
+    /** Reads the contents of the given blob from the store. The contents may be shared with other readers,
+     *  so they must not be modified.
+     */
+    public byte[] readBlob (String hash) {
+        byte[] contents = this.cache().get(hash, byte[].class);
+        if (contents == null) {
+            contents = this.loadBlob(hash);
+            this.cache().put(hash, contents, contents.length);
+        }
+        return contents;
+    }
+
+    /** Reads the contents of the given blob from the disk */
+    private byte[] loadBlob (String hash) {
+        File loose = Utils.join(this.blobs_dir, hash);
+        if (loose.exists()) {
+            return readStored(loose);
+        }
+        /* The blob is either a loose delta, a loose chunk list, or a packed delta, chunk list or blob */
+        byte[] delta;
+        File loose_delta = Utils.join(this.delta_dir, hash);
+        File loose_chunked = Utils.join(this.chunked_dir, hash);
+        if (loose_delta.exists()) {
+            delta = readStored(loose_delta);
+        }
+        else if (loose_chunked.exists()) {
+            return this.joinChunks(readStored(loose_chunked));
+        }
+        else {
+            PackedObject packed = this.findPacked(hash, BLOB, DELTA, CHUNKED);
+            if (packed == null) {
+                throw Utils.error("Object %s does not exist", hash);
+            }
+            if (packed.type == BLOB) {
+                return packed.read();
+            }
+            if (packed.type == CHUNKED) {
+                return this.joinChunks(packed.read());
+            }
+            delta = packed.read();
+        }
+        byte[] base = this.readBlob(Utils.bytesToHash(delta, 0));
+        return Delta.apply(base, Arrays.copyOfRange(delta, DELTA_HEADER_SIZE, delta.length));
+    }
+
+    /** Writes the given commit as a loose object, unless the store already has it. Returns true if
+     *  the commit was written.
+     */
+    public boolean writeCommit (String hash, Commit commit) {
+        if (this.hasCommit(hash)) {
+            return false;
+        }
+        byte[] bytes = commit.toBytes();
+        writeStored(Utils.join(this.commit_dir, hash), bytes);
+        /* A new commit is usually read again right away, as the new HEAD */
+        this.cache().put(hash, commit, bytes.length);
+        return true;
+    }
+
+    /** Writes the given tree as a loose object, unless the store already has it. Returns true if the
+     *  tree was written.
+     */
+    public boolean writeTree (String hash, Tree tree) {
+        if (this.hasTree(hash)) {
+            return false;
+        }
+        this.trees_dir.mkdirs();
+        writeStored(Utils.join(this.trees_dir, hash), tree.toBytes());
+        return true;
+    }
+
+    /** Copies the contents of the given blob to DEST. Loose blobs are decompressed (or copied) as streams,
+     *  packed blobs are written straight from the memory mapped pack and chunked blobs are written
+     *  chunk by chunk, so large blobs never have to fit in memory.
+     */
+    public void copyBlobTo (String hash, File dest) {
+        byte[] cached = this.cache().get(hash, byte[].class);
+        if (cached != null) {
+            Utils.writeContents(dest, (Object) cached);
+            return;
+        }
+        File loose = Utils.join(this.blobs_dir, hash);
+        if (loose.exists()) {
+            Compression.decompressFile(loose, dest);
+            return;
+        }
+        File loose_chunked = Utils.join(this.chunked_dir, hash);
+        if (loose_chunked.exists()) {
+            this.copyChunksTo(readStored(loose_chunked), dest);
+            return;
+        }
+        PackedObject packed = this.findPacked(hash, BLOB, CHUNKED);
+        if (packed != null && packed.type == BLOB) {
+            try (FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Compression.decompressTo(packed.pack.sliceAt(packed.position), out);
+            } catch (IOException e) {
+                throw Utils.error("Error when writing %s", dest.getPath());
+            }
+            return;
+        }
+        if (packed != null) {
+            this.copyChunksTo(packed.read(), dest);
+            return;
+        }
+        /* Deltas are only created for small blobs, so they can be reconstructed in memory */
+        Utils.writeContents(dest, this.readBlob(hash));
+    }
+
+    /** Writes the contents of the staged file SOURCE as a loose blob, unless the store already has it.
+     *  SOURCE is in the form in which objects are stored (see Compression). BASE_HASH is the
+     *  hash of the previous version of the same file (or null). Large blobs are stored in chunks. If both
+     *  versions are small, the delta against that version is small enough and the delta chain is not too
+     *  long, the blob is stored as a delta. Otherwise SOURCE is hard linked (or copied) into the store,
+     *  without being read into memory.
+     */
+    public void writeBlob (String hash, File source, String base_hash) {
+        if (this.hasBlob(hash)) {
+            return;
+        }
+        long size = Compression.sizeOf(source);
+        long chunk_threshold = Config.getLong("chunk.threshold", DEFAULT_CHUNK_THRESHOLD);
+        if (chunk_threshold > 0 && size >= chunk_threshold) {
+            this.writeChunked(hash, source, size);
+            return;
+        }
+        if (base_hash != null && size <= MAX_DELTA_SIZE && this.blobSize(base_hash) <= MAX_DELTA_SIZE) {
+            int depth = this.chainDepth(base_hash) + 1;
+            if (depth <= MAX_CHAIN_DEPTH) {
+                byte[] contents = readStored(source);
+                byte[] delta = Delta.create(this.readBlob(base_hash), contents);
+                /* Storing the delta only if it saves at least half of the space */
+                if (DELTA_HEADER_SIZE + delta.length < contents.length / 2) {
+                    ByteBuffer delta_object = ByteBuffer.allocate(DELTA_HEADER_SIZE + delta.length);
+                    delta_object.put(Utils.hashToBytes(base_hash)).put((byte) depth).put(delta);
+                    this.delta_dir.mkdirs();
+                    writeStored(Utils.join(this.delta_dir, hash), delta_object.array());
+                    return;
+                }
+            }
+        }
+        File blob_file = Utils.join(this.blobs_dir, hash);
+        try {
+            Files.createLink(blob_file.toPath(), source.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Utils.copyFile(source, blob_file);
+        }
+    }
+
+    /** Splits SOURCE into chunks, writes the chunks which are not in the store yet as loose blobs, and
+     *  then the list of the chunks. The list is written last, so it never refers to a missing chunk.
+     */
+    private void writeChunked (String hash, File source, long size) {
+        Chunker chunker = new Chunker(Config.getInt("chunk.size", DEFAULT_CHUNK_SIZE));
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(chunks);
+        /* Chunks repeated within the file are only looked up once */
+        HashSet<String> written = new HashSet<>();
+        try (InputStream in = Compression.open(source)) {
+            out.writeLong(size);
+            out.writeInt(0);
+            chunker.split(in, (buffer, offset, length) -> {
+                byte[] chunk = Arrays.copyOfRange(buffer, offset, offset + length);
+                String chunk_hash = Utils.sha1((Object) chunk);
+                if (written.add(chunk_hash) && !this.hasBlob(chunk_hash)) {
+                    writeStored(Utils.join(this.blobs_dir, chunk_hash), chunk);
+                }
+                out.write(Utils.hashToBytes(chunk_hash));
+                out.writeInt(length);
+            });
+        } catch (IOException e) {
+            throw Utils.error("Error when reading %s", source.getPath());
+        }
+        byte[] list = chunks.toByteArray();
+        ByteBuffer.wrap(list).putInt(8, (list.length - CHUNKS_HEADER_SIZE) / CHUNK_ENTRY_SIZE);
+        this.chunked_dir.mkdirs();
+        writeStored(Utils.join(this.chunked_dir, hash), list);
+    }
+
+    /** Returns the contents of the blob whose chunk list is CHUNKS. Only used by the commands which
+     *  compare contents in memory (merge), as chunked blobs are large.
+     */
+    private byte[] joinChunks (byte[] chunks) {
+        ByteBuffer list = ByteBuffer.wrap(chunks);
+        long size = list.getLong();
+        if (size > Integer.MAX_VALUE - 8) {
+            throw Utils.error("Blob of %d bytes is too large to be read in memory", size);
+        }
+        byte[] contents = new byte[(int) size];
+        int count = list.getInt();
+        int offset = 0;
+        for (int i = 0; i < count; i += 1) {
+            String chunk_hash = Utils.bytesToHash(chunks, CHUNKS_HEADER_SIZE + i * CHUNK_ENTRY_SIZE);
+            byte[] chunk = this.loadBlob(chunk_hash);
+            System.arraycopy(chunk, 0, contents, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return contents;
+    }
+
+    /** Writes the blob whose chunk list is CHUNKS to DEST, one chunk at a time */
+    private void copyChunksTo (byte[] chunks, File dest) {
+        int count = ByteBuffer.wrap(chunks).getInt(8);
+        try (FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < count; i += 1) {
+                String chunk_hash = Utils.bytesToHash(chunks, CHUNKS_HEADER_SIZE + i * CHUNK_ENTRY_SIZE);
+                File loose = Utils.join(this.blobs_dir, chunk_hash);
+                PackedObject packed = loose.exists() ? null : this.findPacked(chunk_hash, BLOB);
+                if (packed != null) {
+                    Compression.decompressTo(packed.pack.sliceAt(packed.position), out);
+                    continue;
+                }
+                /* A loose chunk, or a chunk which was already in the store as a delta */
+                ByteBuffer chunk = ByteBuffer.wrap(loose.exists() ? readStored(loose) : this.loadBlob(chunk_hash));
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+            }
+        } catch (IOException e) {
+            throw Utils.error("Error when writing %s", dest.getPath());
+        }
+    }
+
+    /** Returns the hashes of all the commits in the store, in lexicographic order */
+    public List<String> commitHashes () {
+        TreeSet<String> hashes = new TreeSet<>(Utils.plainFilenamesIn(this.commit_dir));
+        for (PackFile pack : this.packs()) {
+            for (int i = 0; i < pack.size(); i += 1) {
+                if (pack.typeAt(i) == COMMIT) {
+                    hashes.add(pack.hashAt(i));
+                }
+            }
+        }
+        return new ArrayList<>(hashes);
+    }
+
+    /** Folds all the loose objects into new packs and deletes them. Returns the number of objects
+     *  which were packed. Blobs larger than MAX_PACKED_SIZE are left loose.
+     */
+    public int repack () {
+        List<PackFile.Source> loose = new ArrayList<>();
+        for (PackFile.Source s : this.looseObjects()) {
+            if (s.type != BLOB || s.length() <= MAX_PACKED_SIZE) {
+                loose.add(s);
+            }
+        }
+        if (loose.isEmpty()) {
+            return 0;
+        }
+        this.writePacks(loose);
+        /* The loose objects are only deleted once the packs containing them have been written */
+        for (PackFile.Source s : loose) {
+            s.source.delete();
+        }
+        return loose.size();
+    }
+
+    /** Returns all the loose objects of the store, with their types */
+    public List<PackFile.Source> looseObjects () {
+        File[] dirs = {this.commit_dir, this.trees_dir, this.blobs_dir, this.delta_dir, this.chunked_dir};
+        byte[] types = {COMMIT, TREE, BLOB, DELTA, CHUNKED};
+        List<PackFile.Source> loose = new ArrayList<>();
+        for (int i = 0; i < dirs.length; i += 1) {
+            List<String> names = Utils.plainFilenamesIn(dirs[i]);
+            if (names == null) {
+                continue;
+            }
+            for (String s : names) {
+                loose.add(new PackFile.Source(s, types[i], Utils.join(dirs[i], s)));
+            }
+        }
+        return loose;
+    }
+
+    /** Returns the packs of the store */
+    public List<PackFile> getPacks () {
+        return this.packs();
+    }
+
+    /** Adds OBJECTS, which were read from another store (see sourceOf), to this store. They are written
+     *  into a single pack, unless they do not fit in one. Blobs larger than MAX_PACKED_SIZE are copied
+     *  loose, as repack would leave them.
+     */
+    public void receive (List<PackFile.Source> objects) {
+        List<PackFile.Source> packed = new ArrayList<>();
+        for (PackFile.Source s : objects) {
+            if (s.type != BLOB || s.length() <= MAX_PACKED_SIZE) {
+                packed.add(s);
+            }
+            else if (s.source != null) {
+                Utils.copyFile(s.source, Utils.join(this.blobs_dir, s.hash));
+            }
+            else {
+                Utils.writeContents(Utils.join(this.blobs_dir, s.hash), s.contents.duplicate());
+            }
+        }
+        if (!packed.isEmpty()) {
+            this.writePacks(packed);
+        }
+    }
+
+    /** Writes OBJECTS into new packs of at most MAX_PACK_SIZE bytes each, and returns them */
+    private List<PackFile> writePacks (List<PackFile.Source> objects) {
+        this.pack_dir.mkdirs();
+        List<PackFile> written = new ArrayList<>();
+        List<PackFile.Source> batch = new ArrayList<>();
+        long batch_size = 0;
+        for (PackFile.Source s : objects) {
+            if (!batch.isEmpty() && batch_size + s.length() > MAX_PACK_SIZE) {
+                written.add(PackFile.write(this.pack_dir, batch));
+                batch = new ArrayList<>();
+                batch_size = 0;
+            }
+            batch.add(s);
+            batch_size += s.length();
+        }
+        written.add(PackFile.write(this.pack_dir, batch));
+        synchronized (this) {
+            this.packs = null;
+        }
+        return written;
+    }
+
+    /** Deletes the objects whose hashes are not in REACHABLE and which were written before CUTOFF (in
+     *  milliseconds since the Unix Epoch), and returns what was deleted. Loose objects are deleted by their
+     *  own modification time. A pack written before CUTOFF which has such objects is rewritten without them:
+     *  the objects it keeps (along with those of the other packs being rewritten) are written to new packs
+     *  first, and only then is it deleted, index first, so that a process reading the store alongside
+     *  always finds a pack with the objects it reads.
+     */
+    public Pruned prune (Set<String> reachable, long cutoff) {
+        Pruned pruned = new Pruned();
+        for (PackFile.Source s : this.looseObjects()) {
+            if (reachable.contains(s.hash) || s.source.lastModified() >= cutoff) {
+                continue;
+            }
+            long length = s.source.length();
+            if (s.source.delete()) {
+                pruned.count(s.type == COMMIT, length);
+            }
+        }
+
+        List<PackFile> rewritten = new ArrayList<>();
+        List<PackFile.Source> kept = new ArrayList<>();
+        for (PackFile pack : this.packs()) {
+            if (pack.getPackFile().lastModified() >= cutoff) {
+                continue;
+            }
+            List<PackFile.Source> pack_kept = new ArrayList<>();
+            for (int i = 0; i < pack.size(); i += 1) {
+                String hash = pack.hashAt(i);
+                if (reachable.contains(hash)) {
+                    pack_kept.add(new PackFile.Source(hash, pack.typeAt(i), pack.sliceAt(i)));
+                }
+            }
+            if (pack_kept.size() < pack.size()) {
+                rewritten.add(pack);
+                kept.addAll(pack_kept);
+            }
+        }
+        if (rewritten.isEmpty()) {
+            return pruned;
+        }
+        long old_size = 0;
+        for (PackFile pack : rewritten) {
+            for (int i = 0; i < pack.size(); i += 1) {
+                if (!reachable.contains(pack.hashAt(i))) {
+                    pruned.count(pack.typeAt(i) == COMMIT, 0);
+                }
+            }
+            old_size += pack.getPackFile().length() + PackFile.indexFileOf(pack.getPackFile()).length();
+        }
+        long new_size = 0;
+        if (!kept.isEmpty()) {
+            for (PackFile pack : this.writePacks(kept)) {
+                new_size += pack.getPackFile().length() + PackFile.indexFileOf(pack.getPackFile()).length();
+            }
+        }
+        for (PackFile pack : rewritten) {
+            PackFile.indexFileOf(pack.getPackFile()).delete();
+            pack.getPackFile().delete();
+        }
+        pruned.bytes += old_size - new_size;
+        synchronized (this) {
+            this.packs = null;
+        }
+        return pruned;
+    }
+
+    /** Returns the given object as it is stored, to be copied into another store (see receive). TYPE is
+     *  COMMIT, TREE or BLOB, and a blob may be stored in full, as a delta or in chunks. Throws an error if
+     *  the store does not have the object.
+     */
+    public PackFile.Source sourceOf (String hash, byte type) {
+        File[] dirs;
+        byte[] types;
+        if (type == COMMIT) {
+            dirs = new File[] {this.commit_dir};
+            types = new byte[] {COMMIT};
+        }
+        else if (type == TREE) {
+            dirs = new File[] {this.trees_dir};
+            types = new byte[] {TREE};
+        }
+        else {
+            dirs = new File[] {this.blobs_dir, this.delta_dir, this.chunked_dir};
+            types = new byte[] {BLOB, DELTA, CHUNKED};
+        }
+        for (int i = 0; i < dirs.length; i += 1) {
+            File loose = Utils.join(dirs[i], hash);
+            if (loose.exists()) {
+                return new PackFile.Source(hash, types[i], loose);
+            }
+        }
+        PackedObject packed = this.findPacked(hash, types);
+        if (packed == null) {
+            throw Utils.error("Object %s does not exist", hash);
+        }
+        return new PackFile.Source(hash, packed.type, packed.pack.sliceAt(packed.position));
+    }
+
+    /** Returns the blobs the given blob is stored against : the base of a delta, or the chunks of a
+     *  chunked blob. Blobs stored in full depend on no other blob.
+     */
+    public List<String> blobDependencies (String hash) {
+        return blobDependencies(this.sourceOf(hash, BLOB));
+    }
+
+    /** Returns the blobs the blob stored as SOURCE (see sourceOf) is stored against */
+    public static List<String> blobDependencies (PackFile.Source source) {
+        List<String> dependencies = new ArrayList<>();
+        if (source.type == BLOB) {
+            return dependencies;
+        }
+        byte[] stored = Compression.decompress(source.read());
+        if (source.type == DELTA) {
+            dependencies.add(Utils.bytesToHash(stored, 0));
+            return dependencies;
+        }
+        int count = ByteBuffer.wrap(stored).getInt(8);
+        for (int i = 0; i < count; i += 1) {
+            dependencies.add(Utils.bytesToHash(stored, CHUNKS_HEADER_SIZE + i * CHUNK_ENTRY_SIZE));
+        }
+        return dependencies;
+    }
+
+    /** Returns the hash of the contents of the blob stored as STORED, which is a full blob, a delta or a
+     *  chunk list (see sourceOf), computed from the stored form itself : a delta is applied to its base and
+     *  the chunks of a chunk list are hashed one after the other, as they are found in the store. Full blobs
+     *  and chunks are hashed as they are decompressed, straight from the memory mapped file or pack.
+     */
+    public String blobHash (PackFile.Source stored) {
+        MessageDigest md = sha1Digest();
+        if (stored.type == BLOB) {
+            Compression.digest(stored.map(), md);
+        }
+        else if (stored.type == DELTA) {
+            byte[] delta = Compression.decompress(stored.read());
+            byte[] base = this.readBlob(Utils.bytesToHash(delta, 0));
+            md.update(Delta.apply(base, Arrays.copyOfRange(delta, DELTA_HEADER_SIZE, delta.length)));
+        }
+        else {
+            for (String chunk_hash : blobDependencies(stored)) {
+                PackFile.Source chunk = this.sourceOf(chunk_hash, BLOB);
+                if (chunk.type == BLOB) {
+                    Compression.digest(chunk.map(), md);
+                }
+                else {
+                    /* A chunk which was already in the store as a delta */
+                    md.update(this.readBlob(chunk_hash));
+                }
+            }
+        }
+        return Utils.bytesToHash(md.digest(), 0);
+    }
+
+    /** Returns a new SHA-1 digest */
+    private static MessageDigest sha1Digest () {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns the size in which the given blob is stored : the size of the whole blob if it is stored in
+     *  full or in chunks, or the size of its (compressed) delta otherwise.
+     */
+    private long blobSize (String hash) {
+        File loose = Utils.join(this.blobs_dir, hash);
+        if (loose.exists()) {
+            return Compression.sizeOf(loose);
+        }
+        File loose_delta = Utils.join(this.delta_dir, hash);
+        if (loose_delta.exists()) {
+            return loose_delta.length();
+        }
+        File loose_chunked = Utils.join(this.chunked_dir, hash);
+        if (loose_chunked.exists()) {
+            return ByteBuffer.wrap(readStored(loose_chunked)).getLong(0);
+        }
+        PackedObject packed = this.findPacked(hash, BLOB, DELTA, CHUNKED);
+        if (packed == null) {
+            return 0;
+        }
+        if (packed.type == CHUNKED) {
+            return ByteBuffer.wrap(packed.read()).getLong(0);
+        }
+        if (packed.type == DELTA) {
+            return packed.pack.lengthAt(packed.position);
+        }
+        ByteBuffer slice = packed.pack.sliceAt(packed.position);
+        byte[] head = new byte[Math.min(Compression.HEADER_SIZE, slice.remaining())];
+        slice.get(head);
+        return Compression.sizeOf(head, packed.pack.lengthAt(packed.position));
+    }
+
+    /** Returns the number of deltas which have to be applied to reconstruct the given blob. Blobs which
+     *  are stored in full or in chunks have a depth of 0.
+     */
+    private int chainDepth (String hash) {
+        if (Utils.join(this.blobs_dir, hash).exists() || Utils.join(this.chunked_dir, hash).exists()) {
+            return 0;
+        }
+        File loose_delta = Utils.join(this.delta_dir, hash);
+        if (loose_delta.exists()) {
+            return readStored(loose_delta)[Utils.UID_BYTES];
+        }
+        PackedObject packed = this.findPacked(hash, BLOB, DELTA);
+        if (packed == null || packed.type == BLOB) {
+            return 0;
+        }
+        return packed.read()[Utils.UID_BYTES];
+    }
+
+    /** Returns the contents of the loose object stored in FILE, decompressed */
+    private static byte[] readStored (File file) {
+        return Compression.decompress(Utils.readContents(file));
+    }
+
+    /** Writes CONTENTS to FILE in the form in which objects are stored */
+    private static void writeStored (File file, byte[] contents) {
+        Utils.writeContents(file, (Object) Compression.compress(contents));
+    }
+
+    /** Returns the object cache of this store, creating it if needed */
+    synchronized ObjectCache cache () {
+        if (this.cache == null) {
+            this.cache = new ObjectCache(Config.getLong("cache.bytes", DEFAULT_CACHE_BYTES));
+        }
+        return this.cache;
+    }
+
+    /** The objects deleted by prune */
+    public static class Pruned {
+        /** Number of objects deleted, and how many of them were commits */
+        public int objects;
+        public int commits;
+        /** Number of bytes of storage reclaimed */
+        public long bytes;
+
+        /** Counts a deleted object, which took LENGTH bytes */
+        void count (boolean commit, long length) {
+            this.objects += 1;
+            this.commits += commit ? 1 : 0;
+            this.bytes += length;
+        }
+    }
+
+    /** Represents an object found in a pack */
+    private static class PackedObject {
+        final PackFile pack;
+        final int position;
+        final byte type;
+
+        PackedObject (PackFile pack, int position, byte type) {
+            this.pack = pack;
+            this.position = position;
+            this.type = type;
+        }
+
+        /** Returns the contents of the object, decompressed */
+        byte[] read () {
+            return Compression.decompress(this.pack.readAt(this.position));
+        }
+    }
+
+    /** Looks for the given object in the packs. Returns null if no pack has it with one of the given types */
+    private PackedObject findPacked (String hash, byte... types) {
+        PackedObject packed = findPacked(this.packs(), hash, types);
+        /* A gc running alongside may have moved the object to a new pack since the packs were loaded */
+        if (packed == null && this.packsChanged()) {
+            this.refresh();
+            packed = findPacked(this.packs(), hash, types);
+        }
+        return packed;
+    }
+
+    /** Looks for the given object in PACKS */
+    private static PackedObject findPacked (List<PackFile> packs, String hash, byte... types) {
+        for (PackFile pack : packs) {
+            int position = pack.find(hash);
+            if (position >= 0) {
+                byte type = pack.typeAt(position);
+                for (byte t : types) {
+                    if (type == t) {
+                        return new PackedObject(pack, position, type);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Reads the given object from the packs. Throws an error if no pack contains it */
+    private byte[] readPacked (byte type, String hash) {
+        PackedObject packed = this.findPacked(hash, type);
+        if (packed == null) {
+            throw Utils.error("Object %s does not exist", hash);
+        }
+        return packed.read();
+    }
+
+    /** Returns true if packs were added or removed since the packs were loaded */
+    private synchronized boolean packsChanged () {
+        return this.packs != null && this.pack_dir.lastModified() != this.packs_loaded_at;
+    }
+
+    /** Returns the packs of this store, loading them if needed */
+    private synchronized List<PackFile> packs () {
+        if (this.packs == null) {
+            this.packs_loaded_at = this.pack_dir.lastModified();
+            this.packs = new ArrayList<>();
+            File[] pack_files = this.pack_dir.listFiles();
+            if (pack_files != null) {
+                for (File f : pack_files) {
+                    /* A pack is only used once its index has been written */
+                    if (!f.getName().endsWith(".pack") || !PackFile.indexFileOf(f).exists()) {
+                        continue;
+                    }
+                    try {
+                        this.packs.add(new PackFile(f));
+                    } catch (IllegalArgumentException e) {
+                        /* The pack was deleted by a gc since the directory was listed */
+                    }
+                }
+            }
+        }
+        return this.packs;
+    }
+}
@@ -0,0 +1,338 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/** Represents a pack of objects stored together in a single file.
+ *  A pack consists of two files :
+ *  <ol>
+ *  <li> The pack file, which stores the objects one after the other. Each object is stored as its type,
+ *       its length and its contents.</li>
+ *  <li> The index file, which stores the hashes of the objects in sorted order along with the offset of
+ *       each object in the pack file. A fan-out table indexed by the first byte of the hash narrows down
+ *       the range of the binary search.</li>
+ *  </ol>
+ *  Both files are memory mapped when read.
+ *
+ *  @author Rishikesh S
+ */
+public class PackFile {
+
+    /** Magic number at the start of the pack file */
+    private static final int PACK_MAGIC = 0x474c504b;
+
+    /** Magic number at the start of the index file */
+    private static final int INDEX_MAGIC = 0x474c5049;
+
+    /** Version of the pack and index formats */
+    private static final int VERSION = 1;
+
+    /** Size of the header of both files : magic number, version and number of objects */
+    private static final int HEADER_SIZE = 12;
+
+    /** Size of the fan-out table of the index file */
+    private static final int FANOUT_SIZE = 256 * 4;
+
+    /** Size of an index entry : hash and offset in the pack file */
+    private static final int INDEX_ENTRY_SIZE = Utils.UID_BYTES + 8;
+
+    /** The pack file */
+    private final File pack_file;
+
+    /** The memory mapped pack file */
+    private final MappedByteBuffer pack;
+
+    /** The memory mapped index file */
+    private final MappedByteBuffer index;
+
+    /** Number of objects in the pack */
+    private final int count;
+
+    /** Represents an object to be written into a pack. The contents are read from SOURCE, or taken from
+     *  CONTENTS for an object which is already in memory or in another (memory mapped) pack.
+     */
+    public static class Source {
+        final String hash;
+        final byte type;
+        final File source;
+        final ByteBuffer contents;
+
+        public Source (String hash, byte type, File source) {
+            this.hash = hash;
+            this.type = type;
+            this.source = source;
+            this.contents = null;
+        }
+
+        public Source (String hash, byte type, ByteBuffer contents) {
+            this.hash = hash;
+            this.type = type;
+            this.source = null;
+            this.contents = contents;
+        }
+
+        /** Returns the length of the contents */
+        long length () {
+            return this.source != null ? this.source.length() : this.contents.remaining();
+        }
+
+        /** Returns the contents */
+        byte[] read () {
+            if (this.source != null) {
+                return Utils.readContents(this.source);
+            }
+            byte[] bytes = new byte[this.contents.remaining()];
+            this.contents.duplicate().get(bytes);
+            return bytes;
+        }
+
+        /** Returns the contents as a buffer. Files larger than Utils.CHUNK_SIZE are memory mapped rather
+         *  than read.
+         */
+        ByteBuffer map () {
+            if (this.source == null) {
+                return this.contents.duplicate();
+            }
+            if (this.source.length() < Utils.CHUNK_SIZE) {
+                return ByteBuffer.wrap(Utils.readContents(this.source));
+            }
+            return Utils.mapFile(this.source);
+        }
+    }
+
+    /** Opens the pack whose pack file is PACK_FILE. The index file is the file with the same name
+     *  and a .idx extension. Throws an error if the headers are corrupt or the index is cut off.
+     */
+    public PackFile (File pack_file) {
+        this.pack_file = pack_file;
+        this.pack = Utils.mapFile(pack_file);
+        this.index = Utils.mapFile(indexFileOf(pack_file));
+        if (this.pack.limit() < HEADER_SIZE || this.index.limit() < HEADER_SIZE + FANOUT_SIZE
+                || this.pack.getInt(0) != PACK_MAGIC || this.index.getInt(0) != INDEX_MAGIC
+                || this.pack.getInt(4) != VERSION || this.index.getInt(4) != VERSION) {
+            throw this.corrupt();
+        }
+        this.count = this.index.getInt(8);
+        if (this.count < 0 || this.pack.getInt(8) != this.count
+                || this.index.limit() < HEADER_SIZE + FANOUT_SIZE + (long) this.count * INDEX_ENTRY_SIZE) {
+            throw this.corrupt();
+        }
+    }
+
+    /** Returns the error thrown when the pack or its index turns out to be corrupt */
+    private GitletException corrupt () {
+        return Utils.error("Corrupt pack %s", this.pack_file.getName());
+    }
+
+    /** Returns the pack file */
+    public File getPackFile () {
+        return this.pack_file;
+    }
+
+    /** Returns the number of objects in this pack */
+    public int size () {
+        return this.count;
+    }
+
+    /** Returns the hash of the object at the given position of the (sorted) index */
+    public String hashAt (int position) {
+        byte[] hash = new byte[Utils.UID_BYTES];
+        this.index.get(HEADER_SIZE + FANOUT_SIZE + position * INDEX_ENTRY_SIZE, hash);
+        return Utils.bytesToHash(hash, 0);
+    }
+
+    /** Returns the position of the given object in the index, or -1 if the pack does not contain it */
+    public int find (String hash) {
+        byte[] key = Utils.hashToBytes(hash);
+        int first_byte = key[0] & 0xff;
+        int low = first_byte == 0 ? 0 : this.index.getInt(HEADER_SIZE + (first_byte - 1) * 4);
+        int high = this.index.getInt(HEADER_SIZE + first_byte * 4) - 1;
+        if (low < 0 || high >= this.count) {
+            throw this.corrupt();
+        }
+        byte[] probe = new byte[Utils.UID_BYTES];
+        /* Binary searching within the range given by the fan-out table */
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            this.index.get(HEADER_SIZE + FANOUT_SIZE + mid * INDEX_ENTRY_SIZE, probe);
+            int cmp = Arrays.compareUnsigned(probe, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns true if the pack contains the given object */
+    public boolean contains (String hash) {
+        return this.find(hash) >= 0;
+    }
+
+    /** Returns the type of the object at the given position of the index */
+    public byte typeAt (int position) {
+        return this.pack.get(this.offsetAt(position));
+    }
+
+    /** Returns the contents of the object at the given position of the index */
+    public byte[] readAt (int position) {
+        ByteBuffer slice = this.sliceAt(position);
+        byte[] contents = new byte[slice.remaining()];
+        slice.get(contents);
+        return contents;
+    }
+
+    /** Returns the length of the object at the given position of the index. Throws an error if the object
+     *  runs past the end of the pack.
+     */
+    public int lengthAt (int position) {
+        int offset = this.offsetAt(position);
+        int length = this.pack.getInt(offset + 1);
+        if (length < 0 || length > this.pack.limit() - offset - 5) {
+            throw this.corrupt();
+        }
+        return length;
+    }
+
+    /** Returns a view of the contents of the object at the given position of the index. The contents
+     *  are not copied out of the memory mapped pack.
+     */
+    public ByteBuffer sliceAt (int position) {
+        return this.pack.slice(this.offsetAt(position) + 5, this.lengthAt(position));
+    }
+
+    /** Returns the offset in the pack file of the object at the given position of the index. Throws an
+     *  error if the offset is not inside the pack, after its header.
+     */
+    private int offsetAt (int position) {
+        int entry = HEADER_SIZE + FANOUT_SIZE + position * INDEX_ENTRY_SIZE;
+        long offset = this.index.getLong(entry + Utils.UID_BYTES);
+        if (offset < HEADER_SIZE || offset > this.pack.limit() - 5) {
+            throw this.corrupt();
+        }
+        return (int) offset;
+    }
+
+    /** Writes the given objects into a new pack in PACK_DIR and returns it. The pack is named after the
+     *  hash of the objects it contains. Objects with the same hash are only written once.
+     */
+    public static PackFile write (File pack_dir, List<Source> objects) {
+        List<Source> sorted = new ArrayList<>(objects);
+        Collections.sort(sorted, new Comparator<Source>() {
+            @Override
+            public int compare(Source a, Source b) {
+                return a.hash.compareTo(b.hash);
+            }
+        });
+        /* Removing duplicates */
+        List<Source> unique = new ArrayList<>();
+        for (Source s : sorted) {
+            if (unique.isEmpty() || !unique.get(unique.size() - 1).hash.equals(s.hash)) {
+                unique.add(s);
+            }
+        }
+        List<Object> hashes = new ArrayList<>();
+        for (Source s : unique) {
+            hashes.add(s.hash);
+        }
+        String pack_name = "pack-" + Utils.sha1(hashes);
+        File pack_file = Utils.join(pack_dir, pack_name + ".pack");
+        File temp_pack = Utils.join(pack_dir, pack_name + ".pack.tmp");
+        File temp_index = Utils.join(pack_dir, pack_name + ".idx.tmp");
+
+        try {
+            /* Writing the objects into the pack file and noting down their offsets */
+            long[] offsets = new long[unique.size()];
+            try (FileOutputStream file_out = new FileOutputStream(temp_pack);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file_out))) {
+                out.writeInt(PACK_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(unique.size());
+                long offset = HEADER_SIZE;
+                for (int i = 0; i < unique.size(); i += 1) {
+                    Source s = unique.get(i);
+                    long length = s.length();
+                    offsets[i] = offset;
+                    out.writeByte(s.type);
+                    out.writeInt((int) length);
+                    if (s.source != null) {
+                        Files.copy(s.source.toPath(), out);
+                    }
+                    else {
+                        writeBuffer(s.contents.duplicate(), out);
+                    }
+                    offset += 5 + length;
+                }
+                out.flush();
+                file_out.getFD().sync();
+            }
+            /* Writing the index. Entries are in sorted order of their hashes */
+            try (FileOutputStream file_out = new FileOutputStream(temp_index);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file_out))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(unique.size());
+                int[] fanout = new int[256];
+                for (Source s : unique) {
+                    fanout[Integer.parseInt(s.hash.substring(0, 2), 16)] += 1;
+                }
+                int total = 0;
+                for (int i = 0; i < 256; i += 1) {
+                    total += fanout[i];
+                    out.writeInt(total);
+                }
+                for (int i = 0; i < unique.size(); i += 1) {
+                    out.write(Utils.hashToBytes(unique.get(i).hash));
+                    out.writeLong(offsets[i]);
+                }
+                out.flush();
+                file_out.getFD().sync();
+            }
+            /* The index is moved in last, as a pack is only looked up once its index exists */
+            Files.move(temp_pack.toPath(), pack_file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(temp_index.toPath(), indexFileOf(pack_file).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp_pack.delete();
+            temp_index.delete();
+            throw Utils.error("Error when writing pack %s", pack_name);
+        }
+        return new PackFile(pack_file);
+    }
+
+    /** Writes the remaining bytes of BUFFER to OUT */
+    private static void writeBuffer (ByteBuffer buffer, DataOutputStream out) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Utils.CHUNK_SIZE];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /** Returns the index file of the given pack file */
+    public static File indexFileOf (File pack_file) {
+        String name = pack_file.getName();
+        return Utils.join(pack_file.getParentFile(), name.substring(0, name.length() - ".pack".length()) + ".idx");
+    }
+}
@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/** Tests of PackFile : objects written into a pack are found and read back, and corrupt packs and
+ *  indexes are rejected with an error rather than read out of range.
+ *
+ *  @author Rishikesh S
+ */
+public class PackFileTest {
+
+    /** Size of the header of the pack and index files */
+    private static final int HEADER_SIZE = 12;
+
+    /** Size of the fan-out table of the index file */
+    private static final int FANOUT_SIZE = 256 * 4;
+
+    /** Size of an index entry : hash and offset */
+    private static final int INDEX_ENTRY_SIZE = Utils.UID_BYTES + 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Writes COUNT random objects into a pack, and records their contents and types in CONTENTS and
+     *  TYPES by hash
+     */
+    private PackFile writePack (int count, TreeMap<String, byte[]> contents, TreeMap<String, Byte> types)
+            throws IOException {
+        Random random = new Random(count);
+        List<PackFile.Source> objects = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) {
+            byte[] bytes = new byte[random.nextInt(5000)];
+            random.nextBytes(bytes);
+            String hash = Utils.sha1((Object) bytes);
+            byte type = (byte) (1 + random.nextInt(5));
+            contents.put(hash, bytes);
+            types.put(hash, type);
+            objects.add(new PackFile.Source(hash, type, ByteBuffer.wrap(bytes)));
+        }
+        /* Objects given twice are only written once */
+        if (!objects.isEmpty()) {
+            objects.add(objects.get(0));
+        }
+        return PackFile.write(this.folder.newFolder(), objects);
+    }
+
+    /** Overwrites the bytes of FILE at OFFSET with the int VALUE */
+    private static void writeInt (File file, long offset, int value) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(offset);
+            out.writeInt(value);
+        }
+    }
+
+    /** Cuts off the last byte of FILE */
+    private static void truncate (File file) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 1);
+        }
+    }
+
+    /** Asserts that opening the pack PACK_FILE fails with an error */
+    private static void assertCorruptPack (File pack_file) {
+        try {
+            new PackFile(pack_file);
+            fail("Corrupt pack was opened");
+        } catch (GitletException e) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testRoundTrip () throws IOException {
+        TreeMap<String, byte[]> contents = new TreeMap<>();
+        TreeMap<String, Byte> types = new TreeMap<>();
+        PackFile pack = this.writePack(300, contents, types);
+        assertEquals(contents.size(), pack.size());
+        int position = 0;
+        for (String hash : contents.keySet()) {
+            assertEquals(position, pack.find(hash));
+            assertEquals(hash, pack.hashAt(position));
+            assertEquals((byte) types.get(hash), pack.typeAt(position));
+            assertEquals(contents.get(hash).length, pack.lengthAt(position));
+            assertArrayEquals(contents.get(hash), pack.readAt(position));
+            position += 1;
+        }
+        /* Reopening the pack from its files */
+        PackFile reopened = new PackFile(pack.getPackFile());
+        assertEquals(pack.size(), reopened.size());
+        assertArrayEquals(contents.firstEntry().getValue(), reopened.readAt(reopened.find(contents.firstKey())));
+        assertFalse(reopened.contains(Utils.sha1("not in the pack")));
+    }
+
+    @Test
+    public void testEmptyPack () throws IOException {
+        PackFile pack = this.writePack(0, new TreeMap<>(), new TreeMap<>());
+        assertEquals(0, pack.size());
+        assertEquals(-1, pack.find(Utils.sha1("anything")));
+    }
+
+    @Test
+    public void testBadMagic () throws IOException {
+        PackFile pack = this.writePack(10, new TreeMap<>(), new TreeMap<>());
+        writeInt(pack.getPackFile(), 0, 0);
+        assertCorruptPack(pack.getPackFile());
+    }
+
+    @Test
+    public void testCountMismatch () throws IOException {
+        PackFile pack = this.writePack(10, new TreeMap<>(), new TreeMap<>());
+        writeInt(pack.getPackFile(), 8, 11);
+        assertCorruptPack(pack.getPackFile());
+    }
+
+    @Test
+    public void testTruncatedIndex () throws IOException {
+        PackFile pack = this.writePack(10, new TreeMap<>(), new TreeMap<>());
+        truncate(PackFile.indexFileOf(pack.getPackFile()));
+        assertCorruptPack(pack.getPackFile());
+    }
+
+    @Test
+    public void testTruncatedHeader () throws IOException {
+        PackFile pack = this.writePack(0, new TreeMap<>(), new TreeMap<>());
+        truncate(pack.getPackFile());
+        assertCorruptPack(pack.getPackFile());
+    }
+
+    @Test(expected = GitletException.class)
+    public void testTruncatedPack () throws IOException {
+        PackFile pack = this.writePack(10, new TreeMap<>(), new TreeMap<>());
+        truncate(pack.getPackFile());
+        /* The objects are written in the order of their hashes, so the last one was cut off */
+        PackFile truncated = new PackFile(pack.getPackFile());
+        truncated.readAt(truncated.size() - 1);
+    }
+
+    @Test(expected = GitletException.class)
+    public void testOffsetOutOfRange () throws IOException {
+        PackFile pack = this.writePack(10, new TreeMap<>(), new TreeMap<>());
+        File index_file = PackFile.indexFileOf(pack.getPackFile());
+        /* The high half of the offset of the first object */
+        writeInt(index_file, HEADER_SIZE + FANOUT_SIZE + Utils.UID_BYTES, 1);
+        new PackFile(pack.getPackFile()).typeAt(0);
+    }
+
+    @Test(expected = GitletException.class)
+    public void testLengthOutOfRange () throws IOException {
+        PackFile pack = this.writePack(10, new TreeMap<>(), new TreeMap<>());
+        /* The length of the first object, which follows the header and its type */
+        writeInt(pack.getPackFile(), HEADER_SIZE + 1, Integer.MAX_VALUE);
+        new PackFile(pack.getPackFile()).sliceAt(0);
+    }
+
+    @Test(expected = GitletException.class)
+    public void testCorruptFanout () throws IOException {
+        TreeMap<String, byte[]> contents = new TreeMap<>();
+        PackFile pack = this.writePack(10, contents, new TreeMap<>());
+        String hash = contents.lastKey();
+        int first_byte = Integer.parseInt(hash.substring(0, 2), 16);
+        writeInt(PackFile.indexFileOf(pack.getPackFile()), HEADER_SIZE + first_byte * 4, 1000);
+        new PackFile(pack.getPackFile()).find(hash);
+    }
+}
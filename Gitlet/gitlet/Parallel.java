@@ -0,0 +1,62 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Runs independent tasks on a bounded pool of worker threads.
+ *
+ *  @author Rishikesh S
+ */
+class Parallel {
+
+    /** Default number of worker threads : one per available processor */
+    static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Runs TASKS on at most THREADS worker threads and returns their results, in the order of TASKS.
+     *  A single task is run on the calling thread. If a task fails, its exception is rethrown once all
+     *  the tasks have finished.
+     */
+    static <T> List<T> run (List<? extends Callable<T>> tasks, int threads) {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() <= 1 || threads <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            List<Future<T>> futures = pool.invokeAll(tasks);
+            for (Future<T> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw Utils.error("%s", e.getCause().getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Runs TASK on the calling thread, rethrowing checked exceptions as GitletExceptions */
+    private static <T> T call (Callable<T> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw Utils.error("%s", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+/** Represents another repository (a remote), reached through the path of its .gitlet directory.
+ *  The remotes of a repository are saved by name in REMOTES_FILE, a Java properties file like the config.
+ *
+ *  Commits are transferred between two object stores by negotiation : the receiving side has the branch
+ *  heads of its repository, and the sending side walks the history of the wanted commit back from it,
+ *  stopping at the commits the receiving side has (as a repository which has a commit has its whole
+ *  history). The commits found, and the trees and blobs they refer to which the receiving side does not
+ *  have, are sent as they are stored (compressed, as deltas or in chunks, along with the bases and chunks
+ *  they need) and written on the receiving side as a single pack, straight from the loose files and the
+ *  memory mapped packs of the sending side. The commits are then appended to the commit graph of the
+ *  receiving side, parents first, and only then can a branch point to them.
+ *
+ *  @author Rishikesh S
+ */
+public class Remote {
+
+    /** The .gitlet directory of the remote */
+    private final File gitlet_dir;
+
+    /** The object store of the remote */
+    private final ObjectStore objects;
+
+    /** The commit graph of the remote */
+    private final CommitGraph graph;
+
+    /** The files storing the branches and the HEAD pointer of the remote */
+    private final File branch_file;
+    private final File head_file;
+
+    /** Opens the remote whose .gitlet directory is GITLET_DIR. Its files are laid out like the files of
+     *  this repository.
+     */
+    private Remote (File gitlet_dir) {
+        this.gitlet_dir = gitlet_dir;
+        this.objects = new ObjectStore(this.rebase(Repository.COMMIT_DIR), this.rebase(Repository.TREES_DIR),
+                this.rebase(Repository.BLOBS_DIR), this.rebase(Repository.DELTA_DIR),
+                this.rebase(Repository.CHUNKED_DIR), this.rebase(Repository.PACK_DIR));
+        this.graph = new CommitGraph(this.rebase(Repository.GRAPH_DIR), this.objects);
+        this.branch_file = this.rebase(Repository.BRANCH_OBJECT_FILE);
+        this.head_file = this.rebase(Repository.HEAD_POINTER_FILE);
+    }
+
+    /** Returns the file of the remote at the same place as the file LOCAL of this repository */
+    private File rebase (File local) {
+        return new File(this.gitlet_dir, Repository.GITLET_DIR.toPath().relativize(local.toPath()).toString());
+    }
+
+    /** Returns true if a remote with the given name was added */
+    public static boolean exists (String name) {
+        return load().containsKey(name);
+    }
+
+    /** Saves the remote NAME, whose .gitlet directory is at PATH */
+    public static void add (String name, String path) {
+        Properties remotes = load();
+        remotes.setProperty(name, path);
+        save(remotes);
+    }
+
+    /** Forgets the remote NAME */
+    public static void remove (String name) {
+        Properties remotes = load();
+        remotes.remove(name);
+        save(remotes);
+    }
+
+    /** Opens the remote NAME, which must exist. Returns null if its .gitlet directory does not exist. A
+     *  relative path is relative to the working directory.
+     */
+    public static Remote open (String name) {
+        File dir = new File(load().getProperty(name));
+        if (!dir.isAbsolute()) {
+            dir = Utils.join(Repository.CWD, dir.getPath());
+        }
+        if (!Utils.join(dir, Repository.BRANCH_DIR.getName()).isDirectory()) {
+            return null;
+        }
+        return new Remote(dir);
+    }
+
+    /** Returns the saved remotes */
+    private static Properties load () {
+        Properties remotes = new Properties();
+        if (Repository.REMOTES_FILE.exists()) {
+            try (InputStream in = new FileInputStream(Repository.REMOTES_FILE)) {
+                remotes.load(in);
+            } catch (IOException e) {
+                throw Utils.error("Error when reading the remotes");
+            }
+        }
+        return remotes;
+    }
+
+    /** Saves REMOTES */
+    private static void save (Properties remotes) {
+        try (OutputStream out = new FileOutputStream(Repository.REMOTES_FILE)) {
+            remotes.store(out, null);
+        } catch (IOException e) {
+            throw Utils.error("Error when saving the remotes");
+        }
+    }
+
+    /** Returns the branches of the remote */
+    private Branch readBranches () {
+        return Branch.fromBytes(Utils.readContents(this.branch_file));
+    }
+
+    /** Returns the commit at the head of the given branch of the remote, or null if it has no such branch */
+    public String branchHead (String branch) {
+        return this.readBranches().branchHead(branch);
+    }
+
+    /** Copies the commit HEAD of the remote (and its history) into this repository, whose branch heads are
+     *  HAVES. Returns the number of commits copied.
+     */
+    public int fetch (String head, Collection<String> haves) {
+        return transfer(this.objects, Repository.OBJECTS, Repository.COMMIT_GRAPH, head, haves);
+    }
+
+    /** Copies the commit HEAD of this repository (and its history) into the remote, and moves the given
+     *  branch of the remote to it, creating the branch if needed. If the branch is the current branch of
+     *  the remote, its HEAD moves too; the working directory of the remote is left alone, like after a
+     *  reset which has not been written out yet. Returns the number of commits copied.
+     */
+    public int push (String head, String branch) {
+        Branch branches = this.readBranches();
+        int count = transfer(Repository.OBJECTS, this.objects, this.graph, head, branches.getHeads());
+        branches.addBranch(branch, head);
+        Utils.writeContents(this.branch_file, (Object) branches.toBytes());
+        if (branch.equals(branches.getCurrentBranch())) {
+            Utils.writeContents(this.head_file, head);
+        }
+        return count;
+    }
+
+    /** Copies the commit WANT and everything it refers to from the store FROM to the store TO, whose
+     *  commit graph is TO_GRAPH and whose branch heads are HAVES, skipping what TO already has. Returns the
+     *  number of commits copied.
+     */
+    private static int transfer (ObjectStore from, ObjectStore to, CommitGraph to_graph, String want,
+                                 Collection<String> haves) {
+        LinkedHashMap<String, Commit> commits = missingCommits(from, to, want, haves);
+        if (commits.isEmpty()) {
+            return 0;
+        }
+        LinkedHashMap<String, PackFile.Source> objects = new LinkedHashMap<>();
+        for (String hash : commits.keySet()) {
+            objects.put(hash, from.sourceOf(hash, ObjectStore.COMMIT));
+            Commit commit = commits.get(hash);
+            /* A commit made before trees is sent with the blobs it lists, as its tree is not saved */
+            if (commit.isLegacy()) {
+                for (String blob_hash : commit.getReferencedBlobs().values()) {
+                    addBlob(from, to, blob_hash, objects);
+                }
+            }
+            else {
+                addTree(from, to, commit.getTree(), objects);
+            }
+        }
+        to.receive(new ArrayList<>(objects.values()));
+        for (String hash : commits.keySet()) {
+            /* A graph which does not exist yet is rebuilt on first use, from all the commits just received */
+            if (to_graph.get(hash) == null) {
+                to_graph.append(hash, commits.get(hash));
+            }
+        }
+        return commits.size();
+    }
+
+    /** Returns the commits reachable from WANT in FROM which TO does not have, parents first. The walk stops
+     *  at the branch heads HAVES of TO without looking them up, and at any other commit TO has. Parents are
+     *  visited with an explicit stack, as histories can be much deeper than the call stack.
+     */
+    private static LinkedHashMap<String, Commit> missingCommits (ObjectStore from, ObjectStore to, String want,
+                                                                 Collection<String> haves) {
+        HashSet<String> common = new HashSet<>(haves);
+        HashMap<String, Commit> read = new HashMap<>();
+        LinkedHashMap<String, Commit> missing = new LinkedHashMap<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(want);
+        while (!stack.isEmpty()) {
+            String hash = stack.peek();
+            if (missing.containsKey(hash) || common.contains(hash)) {
+                stack.pop();
+                continue;
+            }
+            if (to.hasCommit(hash)) {
+                common.add(hash);
+                stack.pop();
+                continue;
+            }
+            Commit commit = read.computeIfAbsent(hash, from::readCommit);
+            boolean parents_done = true;
+            for (String parent : new String[] {commit.getParent(), commit.getSecondParent()}) {
+                if (parent != null && !missing.containsKey(parent) && !common.contains(parent)) {
+                    stack.push(parent);
+                    parents_done = false;
+                }
+            }
+            if (parents_done) {
+                stack.pop();
+                missing.put(hash, commit);
+            }
+        }
+        return missing;
+    }
+
+    /** Adds the tree TREE_HASH of FROM to OBJECTS, along with its subtrees and blobs, unless TO has it */
+    private static void addTree (ObjectStore from, ObjectStore to, String tree_hash,
+                                 LinkedHashMap<String, PackFile.Source> objects) {
+        if (tree_hash == null || objects.containsKey(tree_hash) || to.hasTree(tree_hash)) {
+            return;
+        }
+        objects.put(tree_hash, from.sourceOf(tree_hash, ObjectStore.TREE));
+        Tree tree = from.readTree(tree_hash);
+        for (String blob_hash : tree.getBlobHashes()) {
+            addBlob(from, to, blob_hash, objects);
+        }
+        for (String subtree_hash : tree.getSubtreeHashes()) {
+            addTree(from, to, subtree_hash, objects);
+        }
+    }
+
+    /** Adds the blob BLOB_HASH of FROM to OBJECTS, along with the blobs it is stored against, unless TO
+     *  has it
+     */
+    private static void addBlob (ObjectStore from, ObjectStore to, String blob_hash,
+                                 LinkedHashMap<String, PackFile.Source> objects) {
+        List<String> pending = new ArrayList<>();
+        pending.add(blob_hash);
+        while (!pending.isEmpty()) {
+            String hash = pending.remove(pending.size() - 1);
+            if (objects.containsKey(hash) || to.hasBlob(hash)) {
+                continue;
+            }
+            objects.put(hash, from.sourceOf(hash, ObjectStore.BLOB));
+            pending.addAll(from.blobDependencies(hash));
+        }
+    }
+}
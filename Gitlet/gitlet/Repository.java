@@ -1,8 +1,22 @@
 package gitlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** Represents a gitlet repository.
 
@@ -17,6 +31,9 @@ public class Repository {
     /** Directory which stores all the commits */
     public static final File COMMIT_DIR = Utils.join(GITLET_DIR, "commits");
 
+    /** Directory which stores all the trees */
+    public static final File TREES_DIR = Utils.join(GITLET_DIR, "trees");
+
     /** Directory which stores all the blobs */
     public static final File BLOBS_DIR = Utils.join(GITLET_DIR, "blobs");
 
@@ -30,6 +47,12 @@ public class Repository {
     public static final File BRANCH_OBJECT_FILE = Utils.join(BRANCH_DIR, "branch_obj");
 
 
+    /** File which stores the paths of the remote repositories by name (see Remote) */
+    public static final File REMOTES_FILE = Utils.join(GITLET_DIR, "remotes");
+
+    /** File which stores the configuration of the repository (see Config) */
+    public static final File CONFIG_FILE = Utils.join(GITLET_DIR, "config");
+
     /** Directory where the staging area is stored */
     public static final File STAGING_AREA_DIR = Utils.join(GITLET_DIR, "staging");
 
@@ -39,6 +62,34 @@ public class Repository {
     /** Directory where the staged files are stored */
     public static final File STAGED_FILES_DIR = Utils.join(STAGING_AREA_DIR, "staged_files");
 
+    /** Unix socket on which the daemon of the repository listens (see Daemon) */
+    public static final File DAEMON_SOCKET = Utils.join(GITLET_DIR, "daemon.sock");
+
+    /** File which journals an update of the working directory while it is in progress (see Journal) */
+    public static final File JOURNAL_FILE = Utils.join(GITLET_DIR, "journal");
+
+    /** Directory where the watcher of the working directory keeps its journal (see Watcher) */
+    public static final File WATCH_DIR = Utils.join(GITLET_DIR, "watch");
+
+    /** Directory where the commit graph is stored */
+    public static final File GRAPH_DIR = Utils.join(GITLET_DIR, "graph");
+
+    /** Directory which stores the blobs saved as deltas against a previous version */
+    public static final File DELTA_DIR = Utils.join(GITLET_DIR, "deltas");
+
+    /** Directory which stores the lists of chunks of the blobs saved in chunks */
+    public static final File CHUNKED_DIR = Utils.join(GITLET_DIR, "chunked");
+
+    /** Directory where the packs are stored */
+    public static final File PACK_DIR = Utils.join(GITLET_DIR, "packs");
+
+    /** The object store of the repository, which stores the commits and blobs */
+    public static final ObjectStore OBJECTS = new ObjectStore(COMMIT_DIR, TREES_DIR, BLOBS_DIR, DELTA_DIR,
+            CHUNKED_DIR, PACK_DIR);
+
+    /** The commit graph of the repository */
+    public static final CommitGraph COMMIT_GRAPH = new CommitGraph(GRAPH_DIR, OBJECTS);
+
     /** Stores the branches and their current pointer locations */
     private Branch branches;
 
@@ -48,14 +99,23 @@ public class Repository {
     /** The staging area  */
     private StagingArea staging_area;
 
+    /** The hash of the contents of the files storing the state of the repo when it was last loaded or
+     *  saved. Used to tell if another process changed the state since
+     */
+    private String state_stamp;
+
+    /** True if saves of the repo state are deferred until flushRepoState is called */
+    private boolean defer_saves;
+
+    /** True if the repo state changed since it was last written */
+    private boolean unsaved;
+
 
     /** Constructor */
     public Repository () {
         /* If the current directory already has a Gitlet version-control system, we load the previous state of the repository */
         if (GITLET_DIR.exists()) {
-            this.HEAD = Utils.readContentsAsString(HEAD_POINTER_FILE);
-            this.staging_area = Utils.readObject(STAGING_AREA_FILE, StagingArea.class);
-            this.branches = Utils.readObject(BRANCH_OBJECT_FILE, Branch.class);
+            this.loadRepoState();
         }
         /* Else, we create a new repo and initialize the repo variables to their default values */
         else {
@@ -68,19 +128,23 @@ public class Repository {
 
     /** Function fot the init command */
     public void init () {
-        /* If a Gitlet VCS already exists in this directory, we print an error message and then exit */
+        /* If a Gitlet VCS already exists in this directory, we print an error message and then return */
         if (GITLET_DIR.exists()) {
             System.out.println("A Gitlet version-control system already exists in the current directory.");
-            System.exit(0);
         }
         /* Else, we set up the .gitlet folder and make an initial commit */
         else {
             GITLET_DIR.mkdir();
             COMMIT_DIR.mkdir();
+            TREES_DIR.mkdir();
             BLOBS_DIR.mkdir();
             BRANCH_DIR.mkdir();
             STAGING_AREA_DIR.mkdir();
             STAGED_FILES_DIR.mkdir();
+            GRAPH_DIR.mkdir();
+            DELTA_DIR.mkdir();
+            CHUNKED_DIR.mkdir();
+            PACK_DIR.mkdir();
             try {
                 HEAD_POINTER_FILE.createNewFile();
             } catch (IOException e) {
@@ -97,8 +161,8 @@ public class Repository {
                 e.printStackTrace();
             }
 
-            /* Creating the initial commit */
-            Commit initial_commit = new Commit("initial commit", null, this.staging_area.getStagedFiles());
+            /* Creating the initial commit, which tracks an empty tree */
+            Commit initial_commit = new Commit("initial commit", null, new Tree().save());
             /* Updates the HEAD and master branch pointer to point to the latest commit. Makes master the current branch */
             this.HEAD = initial_commit.saveCommit();
             this.branches.addBranch("master", this.HEAD);
@@ -108,70 +172,223 @@ public class Repository {
         }
     }
 
-    /** Function for the add command. Takes the name of the file to be staged as the argument */
-    public void add (String file_name) {
-        File given_file = Utils.join(CWD, file_name);
-        /* Checking if the given file exists or not */
-        if (given_file.exists()) {
-            /* Getting the hash of the given file and deserializing the current commit */
-            String file_hash = Utils.sha1(Utils.readContentsAsString(given_file));
-            File current_commit_file = Utils.join(COMMIT_DIR, this.HEAD);
-            Commit current_commit = Utils.readObject(current_commit_file, Commit.class);
+    /** Function for the add command. Takes the names of the files to be staged as the arguments. Each
+     *  argument may be a file, a directory (all the files directly inside it are added) or a glob pattern.
+     *  The files are hashed and copied to the staging area in parallel, and the repo state is saved once
+     *  at the end.
+     */
+    public void add (String... file_names) {
+        /* With a watcher running, directories are expanded from its snapshot, and the files it saw no change
+         * to are not looked at
+         */
+        final WorkingTreeScanner.Scan watched = WorkingTreeScanner.watched(CWD, GITLET_DIR);
+        /* Expanding the arguments into file names. Exiting from the command if any of them does not exist */
+        List<String> files = expandPaths(watched, file_names);
+        if (files == null) {
+            this.saveRepoState();
+            return;
+        }
+        final Commit current_commit = OBJECTS.readCommit(this.HEAD);
 
-            /* If the current version is same as that tracked by current commit, we don't do anything */
-            if (current_commit.isTracking(file_name) && Objects.equals(current_commit.trackedFileHash(file_name), file_hash)) {
-                /* If the file is currently staged for addition, we unstage it as it is tracked by current commit */
-                if (this.staging_area.isStaging(file_name)) {
-                    this.staging_area.unStageFile(file_name);
+        /* Hashing the files (only if they changed since they were last hashed or checked out) and copying
+         * the ones which differ from the current commit to the staging area, on a pool of worker threads.
+         * Files with the same contents are only copied once.
+         */
+        final Set<String> claimed_hashes = ConcurrentHashMap.newKeySet();
+        List<Callable<AddedFile>> tasks = new ArrayList<>();
+        for (final String file_name : files) {
+            final FileStat stat = this.staging_area.getStat(file_name);
+            tasks.add(() -> {
+                File file = Utils.join(CWD, file_name);
+                AddedFile added = new AddedFile(file_name);
+                if (stat != null && (watched != null && watched.isUnchanged(file_name) || stat.matches(file))) {
+                    added.file_hash = stat.getHash();
+                }
+                else {
+                    added.file_hash = Utils.sha1(file);
+                    added.stat = FileStat.of(file, added.file_hash);
+                }
+                added.tracked = Objects.equals(current_commit.trackedFileHash(file_name), added.file_hash);
+                if (!added.tracked && claimed_hashes.add(added.file_hash)) {
+                    StagingArea.copyToStaging(file_name, added.file_hash);
                 }
+                return added;
+            });
+        }
+        List<AddedFile> results = Parallel.run(tasks, Parallel.DEFAULT_THREADS);
+
+        /* Updating the staging area with the results */
+        for (AddedFile added : results) {
+            /* If the current version is same as that tracked by current commit, we unstage it if it is staged */
+            if (added.tracked) {
+                this.staging_area.unStageCopiedFile(added.file_name);
             }
-            /* Else, when the current commit is not tracking */
+            /* Else, when the current commit is not tracking this version, we stage it */
             else {
-                this.staging_area.stageFile(file_name, file_hash);
+                this.staging_area.stageCopiedFile(added.file_name, added.file_hash);
             }
             /* 'Unstages' the file from removal if it was there */
-            if (this.staging_area.isStagingForRemoval(file_name)) {
-                this.staging_area.unStageFileRemoval(file_name);
+            if (this.staging_area.isStagingForRemoval(added.file_name)) {
+                this.staging_area.unStageFileRemoval(added.file_name);
+            }
+            if (added.stat != null) {
+                this.staging_area.putStat(added.file_name, added.stat);
             }
-            this.saveRepoState();
         }
-        /* Exiting from the command as the file does not exist */
-        else {
-            System.out.println("File does not exist.");
-            this.saveRepoState();
+        this.staging_area.pruneStagedFiles();
+        this.saveRepoState();
+    }
+
+    /** The result of adding a single file */
+    private static class AddedFile {
+        /** Name of the file */
+        final String file_name;
+        /** Hash of the contents of the file */
+        String file_hash;
+        /** New metadata of the file, or null if the recorded metadata is still valid */
+        FileStat stat;
+        /** True if the current commit tracks this version of the file */
+        boolean tracked;
+
+        AddedFile (String file_name) {
+            this.file_name = file_name;
+        }
+    }
+
+    /** Expands the given paths into the names of files in the working directory. A path may name a file,
+     *  a directory (which expands to all the files inside it and its subdirectories) or be a glob pattern
+     *  (which expands to all the matching files, e.g. src/**.java). Paths are resolved against the working
+     *  directory and normalized first, so ./a.txt, dir/../a.txt and a.txt name the same file. Prints an
+     *  error and returns null if any path is outside the working directory or does not match any file.
+     *  Directories are listed from the snapshot of the watcher WATCHED if there is one (see
+     *  WorkingTreeScanner), and from the disk otherwise.
+     */
+    private static List<String> expandPaths (WorkingTreeScanner.Scan watched, String... paths) {
+        TreeSet<String> files = new TreeSet<>();
+        for (String path : paths) {
+            String relative = workingPath(path);
+            if (relative == null) {
+                System.out.println("Path is outside the working directory.");
+                return null;
+            }
+            File given = Utils.join(CWD, relative);
+            List<String> matches = new ArrayList<>();
+            if (given.isFile()) {
+                matches.add(relative);
+            }
+            else if (given.isDirectory()) {
+                listWorkingFiles(watched, relative.isEmpty() ? "" : relative + "/", matches);
+            }
+            else if (relative.matches(".*[*?\\[{].*")) {
+                /* Listing the files under the deepest directory which holds the pattern and matching them
+                 * against it */
+                int slash = relative.substring(0, relative.replaceFirst("[*?\\[{].*", "").length()).lastIndexOf('/');
+                String prefix = slash < 0 ? "" : relative.substring(0, slash + 1);
+                List<String> candidates = new ArrayList<>();
+                listWorkingFiles(watched, prefix, candidates);
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relative);
+                for (String f : candidates) {
+                    if (matcher.matches(Paths.get(f))) {
+                        matches.add(f);
+                    }
+                }
+            }
+            if (matches.isEmpty()) {
+                System.out.println("File does not exist.");
+                return null;
+            }
+            files.addAll(matches);
+        }
+        return new ArrayList<>(files);
+    }
+
+    /** Returns PATH relative to the working directory, normalized and with '/' separating the directories
+     *  ("" for the working directory itself), or null if it is outside the working directory or inside the
+     *  .gitlet directory
+     */
+    private static String workingPath (String path) {
+        Path root = CWD.toPath().toAbsolutePath().normalize();
+        Path resolved;
+        try {
+            resolved = root.resolve(path).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!resolved.startsWith(root) || resolved.startsWith(root.resolve(GITLET_DIR.getName()))) {
+            return null;
+        }
+        return root.relativize(resolved).toString().replace(File.separatorChar, '/');
+    }
+
+    /** Adds the paths of all the files under the directory PREFIX (relative to the working directory, and
+     *  ending with '/' unless it is the working directory itself) to FILES. The files are taken from the
+     *  snapshot of the watcher WATCHED, or listed from the disk if it is null.
+     */
+    private static void listWorkingFiles (WorkingTreeScanner.Scan watched, String prefix, List<String> files) {
+        if (watched == null) {
+            listWorkingFiles(Utils.join(CWD, prefix), prefix, files);
+            return;
+        }
+        for (String f : watched.getFiles()) {
+            if (f.startsWith(prefix)) {
+                files.add(f);
+            }
+        }
+    }
+
+    /** Adds the paths of all the files under DIR (with PREFIX prepended to them) to FILES. The .gitlet
+     *  directory is skipped.
+     */
+    private static void listWorkingFiles (File dir, String prefix, List<String> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isFile()) {
+                files.add(prefix + child.getName());
+            }
+            else if (child.isDirectory() && !child.equals(GITLET_DIR)) {
+                listWorkingFiles(child, prefix + child.getName() + "/", files);
+            }
         }
     }
 
     /** Function for the commit command. Creates a new commit. Takes the message given by the user as the argument */
     public void commit (String message) {
-        /* Creates a new commit that tracks the same files as that by its parent */
-        File current_commit_file = Utils.join(COMMIT_DIR, this.HEAD);
-        Commit current_commit = Utils.readObject(current_commit_file, Commit.class);
-        Commit new_commit = new Commit(message, this.HEAD, current_commit.getReferencedBlobs());
+        Commit current_commit = OBJECTS.readCommit(this.HEAD);
 
         /* Gets the current staged files and current staged for removal files */
         TreeMap<String, String> current_staged = this.staging_area.getStagedFiles();
         TreeSet<String> current_staged_removal = this.staging_area.getRemovalStagedFiles();
 
-        /* Iterating through staged for removal files */
-        for (String entry : current_staged_removal) {
-            new_commit.removeBlob(entry);
-        }
-
         /* If no files staged for addition */
         if (current_staged.isEmpty()) {
             System.out.println("No changes added to the commit.");
             this.saveRepoState();
         }
         else {
+            /* Collecting the changes to the files tracked by the parent commit. Files staged for removal
+             * map to null */
+            TreeMap<String, String> changes = new TreeMap<>();
+            for (String entry : current_staged_removal) {
+                changes.put(entry, null);
+            }
             /* Iterating through each file staged for addition */
             for (Map.Entry<String, String> entry : current_staged.entrySet()) {
                 String key = entry.getKey();
                 String value = entry.getValue();
-                File blob_file = Utils.join(Repository.BLOBS_DIR, value);
-                Utils.writeContents(blob_file, Utils.readContentsAsString(Utils.join(Repository.STAGED_FILES_DIR, value)));
-                new_commit.addBlob(key, value);
+                /* The version tracked by the parent commit is used as the base of a delta */
+                String base_hash = current_commit.trackedFileHash(key);
+                OBJECTS.writeBlob(value, Utils.join(Repository.STAGED_FILES_DIR, value), base_hash);
+                changes.put(key, value);
             }
+            /* Creating a new commit that tracks the same files as its parent, with the changes applied. Only
+             * the trees of the directories with changes are rewritten, the others are shared with the parent
+             */
+            String tree = Tree.update(current_commit.getTree(), changes);
+            Commit new_commit = new Commit(message, this.HEAD, tree);
             /* Saving the created commit and updating the HEAD and current branch pointer */
             this.HEAD = new_commit.saveCommit();
             this.branches.addBranch(this.branches.getCurrentBranch(), this.HEAD);
@@ -189,43 +406,44 @@ public class Repository {
         if (this.staging_area.isStaging(file_name)) {
             this.staging_area.unStageFile(file_name);
         }
-        Commit current_commit = Utils.readObject(Utils.join(Repository.COMMIT_DIR, this.HEAD), Commit.class);
+        Commit current_commit = OBJECTS.readCommit(this.HEAD);
         /* Checking if the current version of given file is tracked by the current commit.
         *  If so, then remove the file from CWD and stage it for removal */
         if (current_commit.isTracking(file_name)) {
             this.staging_area.stageForRemoval(file_name);
             if (f.exists()) {
                 f.delete();
+                Utils.deleteEmptyParents(f, CWD);
             }
+            this.staging_area.forgetStat(file_name);
         }
         this.saveRepoState();
     }
 
     /** Functon for the log command */
     public void log () {
-        /* Reading the current commit, which is the one pointed by HEAD */
-        Commit current_commit = Utils.readObject(Utils.join(Repository.COMMIT_DIR, this.HEAD), Commit.class);
-        String current_commit_hash = this.HEAD;
+        /* Walking the history through the commit graph, so that no commit object has to be read */
+        CommitGraph.Entry current_commit = COMMIT_GRAPH.get(this.HEAD);
         /* Looping through the parents and printing out the message. Loops until the
          * initial commit.
          */
         while (current_commit != null) {
             System.out.println("===");
-            System.out.printf("commit %s\n", current_commit_hash);
-            System.out.printf("Date: %s\n", current_commit.getTimestamp());
-            System.out.println(current_commit.getMessage());
+            System.out.printf("commit %s\n", current_commit.hash);
+            if (current_commit.second_parent != null) {
+                System.out.printf("Merge: %s %s\n", current_commit.parent.substring(0, 7),
+                        current_commit.second_parent.substring(0, 7));
+            }
+            System.out.printf("Date: %s\n", Commit.formatTimestamp(current_commit.time));
+            System.out.println(current_commit.message);
             System.out.println();
 
-            /* checking if this is the initial commit. */
-            if (current_commit.getParent() == null) {
+            /* checking if this is the initial commit. If not, moving on to the parent */
+            if (current_commit.parent == null) {
                 current_commit = null;
             }
-            /* If not, updating the current_commit and current_commit_hash to be the values of
-             * their parents.
-             */
             else {
-                current_commit_hash = current_commit.getParent();
-                current_commit = Utils.readObject(Utils.join(Repository.COMMIT_DIR, current_commit.getParent()), Commit.class);
+                current_commit = COMMIT_GRAPH.get(current_commit.parent);
             }
         }
 
@@ -233,31 +451,63 @@ public class Repository {
 
     /** Function for global-log command */
     public void globalLog () {
-        /* Getting the names of all the files in the COMMIT_DIR. Note that the names are
-         * the same as commit hashes.
+        /* Streaming the records of all the commits ever made from the commit graph, in the order in which
+         * they were made. No commit object has to be read.
          */
-        List<String> file_list = Utils.plainFilenamesIn(COMMIT_DIR);
-        /* Looping through all the files/commits and printing out the messages */
-        for (String s : file_list) {
-            Commit current_commit = Utils.readObject(Utils.join(COMMIT_DIR, s), Commit.class);
+        for (int i = 0; i < COMMIT_GRAPH.size(); i += 1) {
+            CommitGraph.Entry current_commit = COMMIT_GRAPH.entryAt(i);
             System.out.println("===");
-            System.out.printf("commit %s\n", s);
-            System.out.printf("Date: %s\n", current_commit.getTimestamp());
-            System.out.println(current_commit.getMessage());
+            System.out.printf("commit %s\n", current_commit.hash);
+            if (current_commit.second_parent != null) {
+                System.out.printf("Merge: %s %s\n", current_commit.parent.substring(0, 7),
+                        current_commit.second_parent.substring(0, 7));
+            }
+            System.out.printf("Date: %s\n", Commit.formatTimestamp(current_commit.time));
+            System.out.println(current_commit.message);
             System.out.println();
         }
     }
 
-    /** Function for the find command */
+    /** Function for the find command. Prints the ids of all the commits with the given message, using the
+     *  message index of the commit graph.
+     */
     public void find (String message) {
-        /* Returns all the file names in the specified  directory as a List */
-        List<String> file_list = Utils.plainFilenamesIn(COMMIT_DIR);
-        /* Looping through each file in the directory */
-        for (String s : file_list) {
-            Commit current_commit = Utils.readObject(Utils.join(COMMIT_DIR, s), Commit.class);
-            if (Objects.equals(current_commit.getMessage(), message)) {
-                System.out.println(s);
+        for (CommitGraph.Entry e : COMMIT_GRAPH.findByMessage(message)) {
+            System.out.println(e.hash);
+        }
+    }
+
+    /** Function for the find --grep command. Prints the ids of all the commits whose message contains the
+     *  given text.
+     */
+    public void findContaining (String text) {
+        for (CommitGraph.Entry e : COMMIT_GRAPH.findContaining(text)) {
+            System.out.println(e.hash);
+        }
+    }
+
+    /** Function for the find --since/--until command. Prints the ids of all the commits made between the
+     *  given dates (both inclusive, in the yyyy-MM-dd format). Either date may be null.
+     */
+    public void findBetween (String since, String until) {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+        try {
+            if (since != null) {
+                from = format.parse(since).getTime();
+            }
+            if (until != null) {
+                /* The whole of the last day is included */
+                to = format.parse(until).getTime() + 24L * 60 * 60 * 1000 - 1;
             }
+        } catch (ParseException e) {
+            System.out.println("Dates must be in the yyyy-MM-dd format.");
+            return;
+        }
+        for (CommitGraph.Entry e : COMMIT_GRAPH.findBetween(from, to)) {
+            System.out.println(e.hash);
         }
     }
 
@@ -291,11 +541,74 @@ public class Repository {
             System.out.println(s);
         }
         System.out.println();
-        /* Leaving these blank for now ... */
+        /* Scanning the working directory and hashing the tracked or staged files which changed since they
+         * were last hashed, to compare them against the current commit and the staging area.
+         */
+        WorkingTreeScanner.Scan working_files = WorkingTreeScanner.scan(CWD, GITLET_DIR);
+        TreeMap<String, String> tracked_files = OBJECTS.readCommit(this.HEAD).getReferencedBlobs();
+        TreeMap<String, String> staged_files = this.staging_area.getStagedFiles();
+        List<String> known_files = new ArrayList<>();
+        for (String s : tracked_files.keySet()) {
+            if (working_files.contains(s)) {
+                known_files.add(s);
+            }
+        }
+        for (String s : staged_files.keySet()) {
+            if (working_files.contains(s) && !tracked_files.containsKey(s)) {
+                known_files.add(s);
+            }
+        }
+        Map<String, String> working_hashes = this.staging_area.workingFileHashes(known_files, working_files);
+
+        /* A file is modified (or deleted) if it differs from its staged version or, if it is not staged,
+         * from its version in the current commit. Files staged for removal are expected to be deleted.
+         */
+        TreeMap<String, String> modifications = new TreeMap<>();
+        for (Map.Entry<String, String> entry : staged_files.entrySet()) {
+            String working_hash = working_hashes.get(entry.getKey());
+            if (!Objects.equals(working_hash, entry.getValue())) {
+                modifications.put(entry.getKey(), working_hash == null ? "deleted" : "modified");
+            }
+        }
+        for (Map.Entry<String, String> entry : tracked_files.entrySet()) {
+            String file_name = entry.getKey();
+            if (staged_files.containsKey(file_name) || staged_for_removal_filenames.contains(file_name)) {
+                continue;
+            }
+            String working_hash = working_hashes.get(file_name);
+            if (!Objects.equals(working_hash, entry.getValue())) {
+                modifications.put(file_name, working_hash == null ? "deleted" : "modified");
+            }
+        }
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (Map.Entry<String, String> entry : modifications.entrySet()) {
+            System.out.println(entry.getKey() + " (" + entry.getValue() + ")");
+        }
         System.out.println();
+        /* Files which are neither staged nor tracked (the files which are have been hashed), including files
+         * staged for removal which were re-created
+         */
+        TreeSet<String> untracked_files = new TreeSet<>();
+        for (String s : working_files.getFiles()) {
+            if (!working_hashes.containsKey(s)
+                    || staged_for_removal_filenames.contains(s) && !staged_files.containsKey(s)) {
+                untracked_files.add(s);
+            }
+        }
         System.out.println("=== Untracked Files ===");
+        for (String s : untracked_files) {
+            System.out.println(s);
+        }
         System.out.println();
+        /* Saving the metadata of the files which were hashed, so they are not hashed again next time */
+        if (this.staging_area.takeStatsChanged()) {
+            this.saveRepoState();
+        }
+        /* With a watcher running, the next scans only look at the files which change again and trust the
+         * metadata recorded for the others, so it must be on disk before the snapshot is
+         */
+        this.flushRepoState();
+        working_files.saveSnapshot();
     }
 
     /** Function for the checkout command */
@@ -318,73 +631,157 @@ public class Repository {
 
     /** Function which checks out the given file in the given commit */
     private  void checkoutCommit (String commit, String filename) {
-        /* Gets the commit file */
-        File commit_file = Utils.join(Repository.COMMIT_DIR, commit);
-        /* Checks if the commit exists. If not, prints an error message */
-        if (commit_file.exists()) {
-            Commit current_commit = Utils.readObject(commit_file, Commit.class);
+        /* Resolves the (possibly abbreviated) commit id. If no single commit matches, prints an error message */
+        commit = this.resolveCommitId(commit);
+        if (commit != null) {
+            Commit current_commit = OBJECTS.readCommit(commit);
             /* Checks if the commit tracks the given file. If not, prints an error */
             if (current_commit.isTracking(filename)) {
-                File tracked_file = Utils.join(Repository.BLOBS_DIR, current_commit.trackedFileHash(filename));
-                String contents_tracked_file = Utils.readContentsAsString(tracked_file);
-                Utils.writeContents(Utils.join(Repository.CWD, filename), contents_tracked_file);
+                String file_hash = current_commit.trackedFileHash(filename);
+                File dest = Utils.join(Repository.CWD, filename);
+                dest.getParentFile().mkdirs();
+                /* The blob is written to a temporary file, whose hash is checked before it replaces the file */
+                File temp = new File(dest.getParentFile(), "." + dest.getName() + ".gitlet-tmp");
+                try {
+                    OBJECTS.copyBlobTo(file_hash, temp);
+                    if (!Utils.sha1(temp).equals(file_hash)) {
+                        throw Utils.error("Blob %s of %s is corrupt", file_hash, filename);
+                    }
+                    Files.move(temp.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw Utils.error("Error when writing %s", filename);
+                } finally {
+                    temp.delete();
+                }
+                this.staging_area.recordStat(filename, file_hash);
             }
             else {
                 System.out.println("File does not exist in that commit");
             }
         }
-        else {
-            System.out.println("No commit with that id exists");
+    }
+
+    /** Returns the full id of the commit whose id starts with COMMIT_ID, which may be abbreviated. If no
+     *  commit or more than one commit matches, prints an error message and returns null.
+     */
+    private String resolveCommitId (String commit_id) {
+        List<String> matches = COMMIT_GRAPH.resolve(commit_id);
+        if (matches.isEmpty()) {
+            System.out.println("No commit with that id exists.");
+            return null;
+        }
+        if (matches.size() > 1) {
+            System.out.printf("Commit id %s is ambiguous. Candidates :\n", commit_id);
+            for (String s : matches) {
+                System.out.println(s);
+            }
+            return null;
         }
+        return matches.get(0);
     }
 
     /** Function which checks out to the given branch */
     private  void checkoutBranch (String branch) {
-        /* Current commit*/
-        Commit curr_commit = Utils.readObject(Utils.join(Repository.COMMIT_DIR, this.HEAD), Commit.class);
         /* Failure cases */
-        /* 1. If there is an untracked file */
-        for (String f : Objects.requireNonNull(Utils.plainFilenamesIn(Repository.CWD))) {
-            if (!curr_commit.isTracking(f)) {
-                System.out.println("There is an untracked file in the way; delete it or add and commit it first.");
-                return;
-            }
-
-        }
-        /* 2. If a branch with the given name does not exist */
+        /* 1. If a branch with the given name does not exist */
         if (!this.branches.existsBranch(branch)) {
             System.out.println("No such branch exists");
             return;
         }
-        /* 3. If checking out the current branch */
+        /* 2. If checking out the current branch */
         if (Objects.equals(this.branches.getCurrentBranch(), branch)) {
             System.out.println("No need to checkout the current branch");
             return;
         }
-        /* Reading the commit at the head of the given branch and getting the files tracked by it */
-        Commit branch_head = Utils.readObject(Utils.join(Repository.COMMIT_DIR, this.branches.branchHead(branch)), Commit.class);
-        Set <String> branch_head_files = branch_head.getFileNames();
-
-        /* Deleting files not in the head of the branch being checked out */
-        for (String f : Objects.requireNonNull(Utils.plainFilenamesIn(Repository.CWD))) {
-            if (!branch_head_files.contains(f)) {
-                File curr_file = Utils.join(Repository.CWD, f);
-                curr_file.delete();
-            }
-        }
-        /* Getting the files tracked by the branch head and placing them in CWD */
-        for (String s : branch_head_files) {
-            String file_hash = branch_head.trackedFileHash(s);
-            /* The place where contents of the file are stored */
-            File new_file = Utils.join(Repository.BLOBS_DIR, file_hash);
-            /* Writing the file to the CWD */
-            Utils.writeContents(Utils.join(Repository.CWD, s), Utils.readContentsAsString(new_file));
+        /* Updating the working directory to the head of the given branch. Fails if there is an untracked
+         * file in the way */
+        String branch_head = this.branches.branchHead(branch);
+        CheckoutEngine engine = this.planCheckout(OBJECTS.readCommit(branch_head));
+        if (engine == null) {
+            return;
         }
 
         /* Setting the checked out branch as current branch, clearing the staging area and updating the HEAD */
-        this.branches.setCurrentBranch(branch);
+        this.moveTo(engine, branch_head, branch);
+    }
+
+    /** Plans the update of the working directory from the files tracked by the current commit to the files
+     *  tracked by the TARGET commit. Only the files whose contents differ from the target will be written,
+     *  and only the files tracked by the current commit but not by the target will be deleted. Returns null
+     *  (after printing an error) if an untracked file would be overwritten. Nothing is touched until the
+     *  plan is carried out by moveTo.
+     */
+    private CheckoutEngine planCheckout (Commit target) {
+        return this.planCheckout(target.getReferencedBlobs());
+    }
+
+    /** Plans the update of the working directory to the files TARGET_FILES (mapped to the hashes of their
+     *  blobs), as planCheckout above. The blobs need not be stored yet.
+     */
+    private CheckoutEngine planCheckout (TreeMap<String, String> target_files) {
+        Commit curr_commit = OBJECTS.readCommit(this.HEAD);
+        TreeMap<String, String> current_files = curr_commit.getReferencedBlobs();
+
+        /* Hashing the files of the working directory which are tracked by either commit. The recorded
+         * metadata means that only the files which changed since they were last hashed are read.
+         */
+        TreeSet<String> paths = new TreeSet<>(current_files.keySet());
+        paths.addAll(target_files.keySet());
+        Map<String, String> working_files = this.staging_area.workingFileHashes(paths,
+                WorkingTreeScanner.watched(CWD, GITLET_DIR));
+
+        CheckoutEngine engine = new CheckoutEngine(OBJECTS, CWD);
+        engine.diff(current_files, target_files, working_files);
+        if (!engine.getUntrackedInTheWay().isEmpty()) {
+            System.out.println("There is an untracked file in the way; delete it or add and commit it first.");
+            return null;
+        }
+        return engine;
+    }
+
+    /** Carries out the planned update of the working directory, then makes BRANCH the current branch,
+     *  points it and HEAD to the commit HEAD, clears the staging area and saves the repo state. The whole
+     *  update is journaled first (see Journal), so if it is interrupted it is completed by the next command.
+     */
+    private void moveTo (CheckoutEngine engine, String head, String branch) {
+        Journal journal = new Journal(head, branch, engine.getDeletions(), engine.getWrites());
+        journal.write();
+        this.completeMove(journal, engine);
+    }
+
+    /** Applies the update planned by ENGINE to the working directory and the state recorded in JOURNAL to
+     *  the repository, saves the repo state and deletes the journal.
+     */
+    private void completeMove (Journal journal, CheckoutEngine engine) {
+        Map<String, FileStat> written = engine.apply();
+        for (String f : journal.getDeletions()) {
+            this.staging_area.forgetStat(f);
+        }
+        for (Map.Entry<String, FileStat> entry : written.entrySet()) {
+            this.staging_area.putStat(entry.getKey(), entry.getValue());
+        }
+        this.HEAD = journal.getHead();
+        this.branches.addBranch(journal.getBranch(), journal.getHead());
+        this.branches.setCurrentBranch(journal.getBranch());
         this.staging_area.clearStagingArea();
-        this.HEAD = this.branches.branchHead(branch);
+        /* The state must be on disk before the journal is deleted, even if saves are deferred */
+        this.saveRepoState();
+        this.flushRepoState();
+        Journal.delete();
+    }
+
+    /** Rolls forward the update of the working directory left behind by an interrupted command. The
+     *  files which were already updated are skipped.
+     */
+    private void recover () {
+        Journal journal = Journal.read();
+        TreeSet<String> paths = new TreeSet<>(journal.getDeletions());
+        paths.addAll(journal.getWrites().keySet());
+        CheckoutEngine engine = new CheckoutEngine(OBJECTS, CWD);
+        engine.resume(journal.getDeletions(), journal.getWrites(), this.staging_area.workingFileHashes(paths));
+        this.completeMove(journal, engine);
+        System.err.printf("Completed an interrupted update of the working directory to %s.\n", journal.getHead());
     }
 
     /** Function for the branch command */
@@ -419,17 +816,357 @@ public class Repository {
         }
     }
 
-    /** Function for the reset command */
+    /** Function for the reset command. Checks out all the files tracked by the given commit, removes the
+     *  tracked files which are not present in that commit and moves the current branch's head to it. Only
+     *  the files which differ from the given commit are touched.
+     */
     public void reset (String commit_id) {
+        commit_id = this.resolveCommitId(commit_id);
+        if (commit_id == null) {
+            return;
+        }
+        CheckoutEngine engine = this.planCheckout(OBJECTS.readCommit(commit_id));
+        if (engine == null) {
+            return;
+        }
+        /* Moving the current branch to the given commit and clearing the staging area */
+        this.moveTo(engine, commit_id, this.branches.getCurrentBranch());
+    }
+
+
+    /** Function for the merge command. Merges the files of the given branch into the current branch.
+     *  The split point is the lowest common ancestor of the two branch heads, found through the commit
+     *  graph. Only the files which changed between the split point and either head are compared (see
+     *  Tree.diff). A file changed in the given branch only is taken from it, a file changed in the current
+     *  branch only is kept, and a file changed differently in both is a conflict : the file is written
+     *  with both versions between conflict markers. The result is committed as a merge commit.
+     */
+    public void merge (String branch) {
+        /* Failure cases */
+        if (!this.staging_area.getStagedFiles().isEmpty() || !this.staging_area.getRemovalStagedFiles().isEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            return;
+        }
+        if (!this.branches.existsBranch(branch)) {
+            System.out.println("A branch with that name does not exist.");
+            return;
+        }
+        if (Objects.equals(this.branches.getCurrentBranch(), branch)) {
+            System.out.println("Cannot merge a branch with itself.");
+            return;
+        }
+        String given_head = this.branches.branchHead(branch);
+        String split_point = COMMIT_GRAPH.lowestCommonAncestor(this.HEAD, given_head);
+        if (Objects.equals(split_point, given_head)) {
+            System.out.println("Given branch is an ancestor of the current branch.");
+            return;
+        }
+        Commit given_commit = OBJECTS.readCommit(given_head);
+        /* If the current branch is behind the given branch, it is simply moved forward to it */
+        if (Objects.equals(split_point, this.HEAD)) {
+            CheckoutEngine engine = this.planCheckout(given_commit);
+            if (engine == null) {
+                return;
+            }
+            this.moveTo(engine, given_head, this.branches.getCurrentBranch());
+            System.out.println("Current branch fast-forwarded.");
+            return;
+        }
 
+        /* Comparing the changes made on both branches since the split point, file by file */
+        Commit current_commit = OBJECTS.readCommit(this.HEAD);
+        String split_tree = split_point == null ? null : OBJECTS.readCommit(split_point).getTree();
+        TreeMap<String, String> current_changes = Tree.diff(split_tree, current_commit.getTree());
+        TreeMap<String, String> given_changes = Tree.diff(split_tree, given_commit.getTree());
+        TreeMap<String, String> changes = new TreeMap<>();
+        /* The contents of the files in conflict, which are only stored once the merge is known to go ahead */
+        TreeMap<String, byte[]> conflicts = new TreeMap<>();
+        for (Map.Entry<String, String> entry : given_changes.entrySet()) {
+            String file_name = entry.getKey();
+            String given_hash = entry.getValue();
+            /* Changed in the given branch only : taking the given version */
+            if (!current_changes.containsKey(file_name)) {
+                changes.put(file_name, given_hash);
+            }
+            /* Changed in different ways in both branches : a conflict */
+            else if (!Objects.equals(current_changes.get(file_name), given_hash)) {
+                byte[] contents = conflictContents(current_changes.get(file_name), given_hash);
+                conflicts.put(file_name, contents);
+                changes.put(file_name, Utils.sha1((Object) contents));
+            }
+        }
+
+        /* Planning the update of the working directory to the merged files before anything is stored. Fails
+         * if there is an untracked file in the way */
+        TreeMap<String, String> merged_files = new TreeMap<>(current_commit.getReferencedBlobs());
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            if (entry.getValue() == null) {
+                merged_files.remove(entry.getKey());
+            }
+            else {
+                merged_files.put(entry.getKey(), entry.getValue());
+            }
+        }
+        CheckoutEngine engine = this.planCheckout(merged_files);
+        if (engine == null) {
+            return;
+        }
+
+        /* Storing the files in conflict and creating the merge commit. It is saved before the working
+         * directory is touched, as the journal refers to it */
+        for (Map.Entry<String, byte[]> entry : conflicts.entrySet()) {
+            String file_name = entry.getKey();
+            this.writeConflict(changes.get(file_name), entry.getValue(), current_changes.get(file_name));
+        }
+        String tree = Tree.update(current_commit.getTree(), changes);
+        Commit merge_commit = new Commit(String.format("Merged %s into %s.", branch,
+                this.branches.getCurrentBranch()), this.HEAD, given_head, tree);
+        this.moveTo(engine, merge_commit.saveCommit(), this.branches.getCurrentBranch());
+        if (!conflicts.isEmpty()) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    /** Returns the contents of a file in conflict, whose versions in the current and given branches are the
+     *  blobs CURRENT_HASH and GIVEN_HASH (null if the file was deleted in that branch)
+     */
+    private static byte[] conflictContents (String current_hash, String given_hash) {
+        byte[] current_contents = current_hash == null ? new byte[0] : OBJECTS.readBlob(current_hash);
+        byte[] given_contents = given_hash == null ? new byte[0] : OBJECTS.readBlob(given_hash);
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        contents.writeBytes("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+        contents.writeBytes(current_contents);
+        contents.writeBytes("=======\n".getBytes(StandardCharsets.UTF_8));
+        contents.writeBytes(given_contents);
+        contents.writeBytes(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
+        return contents.toByteArray();
     }
 
+    /** Stores CONTENTS, the contents of a file in conflict, as the blob FILE_HASH. The version of the file in
+     *  the current branch, CURRENT_HASH (which may be null), is the base it may be stored against.
+     */
+    private void writeConflict (String file_hash, byte[] contents, String current_hash) {
+        /* Staged files are in the form in which blobs are stored */
+        File staged_file = Utils.join(STAGED_FILES_DIR, "merge-conflict");
+        Utils.writeContents(staged_file, (Object) Compression.compress(contents));
+        OBJECTS.writeBlob(file_hash, staged_file, current_hash);
+        staged_file.delete();
+    }
+
+    /** Function for the repack command. Folds the loose commits and blobs into a pack */
+    public void repack () {
+        int packed = OBJECTS.repack();
+        System.out.printf("Packed %d objects.\n", packed);
+    }
 
-    /** Saves the state of the repo */
+    /** Function for the gc command. Deletes the objects which cannot be reached from any branch or from HEAD
+     *  (see GarbageCollector) and reports the space reclaimed
+     */
+    public void gc () {
+        List<String> roots = new ArrayList<>(this.branches.getHeads());
+        roots.add(this.HEAD);
+        GarbageCollector collector = new GarbageCollector(OBJECTS, COMMIT_GRAPH);
+        ObjectStore.Pruned pruned = collector.collect(roots);
+        System.out.printf("Kept %d reachable objects (%d commits).\n", collector.reachableCount(),
+                collector.reachableCommitCount());
+        System.out.printf("Removed %d unreachable objects (%d commits), reclaimed %d bytes.\n", pruned.objects,
+                pruned.commits, pruned.bytes);
+    }
+
+    /** Function for the fsck command. Checks every object of the store against its hash and that the
+     *  objects they refer to exist (see Fsck), and prints the report
+     */
+    public void fsck () {
+        TreeMap<String, String> heads = new TreeMap<>();
+        for (String branch : this.branches.getAllBranches()) {
+            heads.put(branch, this.branches.branchHead(branch));
+        }
+        for (String line : new Fsck(OBJECTS).check(heads, this.HEAD)) {
+            System.out.println(line);
+        }
+    }
+
+    /** Function for the add-remote command. Saves the .gitlet directory at PATH (with '/' separating the
+     *  directories) as a remote named NAME
+     */
+    public void addRemote (String name, String path) {
+        if (Remote.exists(name)) {
+            System.out.println("A remote with that name already exists.");
+            return;
+        }
+        Remote.add(name, path.replace('/', File.separatorChar));
+    }
+
+    /** Function for the rm-remote command */
+    public void rmRemote (String name) {
+        if (!Remote.exists(name)) {
+            System.out.println("A remote with that name does not exist.");
+            return;
+        }
+        Remote.remove(name);
+    }
+
+    /** Function for the fetch command. Copies the commits of the branch BRANCH of the remote REMOTE_NAME
+     *  which this repository does not have, and points the branch REMOTE_NAME/BRANCH at its head. Returns
+     *  false if nothing could be fetched.
+     */
+    public boolean fetch (String remote_name, String branch) {
+        Remote remote = openRemote(remote_name);
+        if (remote == null) {
+            return false;
+        }
+        String remote_head = remote.branchHead(branch);
+        if (remote_head == null) {
+            System.out.println("That remote does not have that branch.");
+            return false;
+        }
+        remote.fetch(remote_head, this.branches.getHeads());
+        this.branches.addBranch(remote_name + "/" + branch, remote_head);
+        this.saveRepoState();
+        return true;
+    }
+
+    /** Function for the push command. Copies the commits of the current branch which the remote REMOTE_NAME
+     *  does not have, and moves its branch BRANCH to the current head. The branch of the remote must not
+     *  have commits which are not in the current branch.
+     */
+    public void push (String remote_name, String branch) {
+        Remote remote = openRemote(remote_name);
+        if (remote == null) {
+            return;
+        }
+        String remote_head = remote.branchHead(branch);
+        if (remote_head != null && !(OBJECTS.hasCommit(remote_head)
+                && remote_head.equals(COMMIT_GRAPH.lowestCommonAncestor(remote_head, this.HEAD)))) {
+            System.out.println("Please pull down remote changes before pushing.");
+            return;
+        }
+        remote.push(this.HEAD, branch);
+        this.branches.addBranch(remote_name + "/" + branch, this.HEAD);
+        this.saveRepoState();
+    }
+
+    /** Function for the pull command. Fetches the branch BRANCH of the remote REMOTE_NAME and merges it into
+     *  the current branch
+     */
+    public void pull (String remote_name, String branch) {
+        if (this.fetch(remote_name, branch)) {
+            this.merge(remote_name + "/" + branch);
+        }
+    }
+
+    /** Opens the given remote, or prints an error and returns null if it does not exist */
+    private static Remote openRemote (String remote_name) {
+        if (!Remote.exists(remote_name)) {
+            System.out.println("A remote with that name does not exist.");
+            return null;
+        }
+        Remote remote = Remote.open(remote_name);
+        if (remote == null) {
+            System.out.println("Remote directory not found.");
+        }
+        return remote;
+    }
+
+    /** Prints the statistics of the object cache since this process started. Mostly useful in a batch or
+     *  through the daemon, which keep the cache across commands.
+     */
+    public void cacheStats () {
+        ObjectCache cache = OBJECTS.cache();
+        long hits = cache.getHits();
+        long lookups = hits + cache.getMisses();
+        System.out.printf("Cached objects : %d (%d of %d bytes)\n", cache.getCount(), cache.getBytes(),
+                cache.getCapacity());
+        System.out.printf("Hits : %d, misses : %d (hit rate %.1f%%)\n", hits, cache.getMisses(),
+                lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+    }
+
+
+    /** Saves the state of the repo. While saves are deferred (see deferSaves), the state is only marked as
+     *  changed, and saved by the next call to flushRepoState.
+     */
     public void saveRepoState () {
-        Utils.writeContents(HEAD_POINTER_FILE, this.HEAD);
-        Utils.writeObject(STAGING_AREA_FILE, this.staging_area);
-        Utils.writeObject(BRANCH_OBJECT_FILE, this.branches);
+        this.unsaved = true;
+        if (!this.defer_saves) {
+            this.flushRepoState();
+        }
+    }
+
+    /** Writes the state of the repo to disk if it changed since it was last written */
+    public void flushRepoState () {
+        if (!this.unsaved) {
+            return;
+        }
+        byte[] head = this.HEAD.getBytes(StandardCharsets.UTF_8);
+        byte[] staging_area = this.staging_area.toBytes();
+        byte[] branches = this.branches.toBytes();
+        Utils.writeContents(HEAD_POINTER_FILE, (Object) head);
+        Utils.writeContents(STAGING_AREA_FILE, (Object) staging_area);
+        Utils.writeContents(BRANCH_OBJECT_FILE, (Object) branches);
+        this.state_stamp = stateStamp(head, staging_area, branches);
+        this.unsaved = false;
+    }
+
+    /** Sets whether saves of the repo state are deferred until the next call to flushRepoState. Used to run
+     *  many commands without writing the state after each of them (see Batch).
+     */
+    public void deferSaves (boolean defer) {
+        this.defer_saves = defer;
+    }
+
+    /** Loads the saved state of the repo, completing an update of the working directory which was
+     *  interrupted if there is one
+     */
+    private void loadRepoState () {
+        byte[] head = Utils.readContents(HEAD_POINTER_FILE);
+        byte[] staging_area = Utils.readContents(STAGING_AREA_FILE);
+        byte[] branches = Utils.readContents(BRANCH_OBJECT_FILE);
+        this.HEAD = new String(head, StandardCharsets.UTF_8);
+        this.staging_area = StagingArea.fromBytes(staging_area);
+        this.branches = Branch.fromBytes(branches);
+        this.state_stamp = stateStamp(head, staging_area, branches);
+        this.unsaved = false;
+        if (Journal.exists()) {
+            this.recover();
+        }
+    }
+
+    /** Brings a repo which has been kept in memory (by the daemon) up to date with the repository on disk.
+     *  The saved state is reloaded only if another process changed it, and the commit graph and the object
+     *  store only reload what changed, so the repo stays warm between commands.
+     */
+    public void refresh () {
+        if (!GITLET_DIR.exists()) {
+            return;
+        }
+        if (!stateStamp().equals(this.state_stamp)) {
+            this.loadRepoState();
+        }
+        COMMIT_GRAPH.refresh();
+        OBJECTS.refresh();
+    }
+
+    /** Reloads the saved state of the repo, dropping the changes made in memory which were not saved. Used
+     *  by the daemon after a command failed half way, as its in-memory state may no longer match the disk.
+     */
+    public void reload () {
+        if (GITLET_DIR.exists()) {
+            this.loadRepoState();
+        }
+    }
+
+    /** Returns the stamp of the saved state of the repo, read from the files storing it. Contents are
+     *  compared rather than modification times, which may be too coarse to tell two saves apart.
+     */
+    private static String stateStamp () {
+        return stateStamp(Utils.readContents(HEAD_POINTER_FILE), Utils.readContents(STAGING_AREA_FILE),
+                Utils.readContents(BRANCH_OBJECT_FILE));
+    }
+
+    /** Returns the stamp of the state saved as the contents HEAD, STAGING_AREA and BRANCHES */
+    private static String stateStamp (byte[] head, byte[] staging_area, byte[] branches) {
+        return Utils.sha1(Utils.sha1((Object) head), Utils.sha1((Object) staging_area),
+                Utils.sha1((Object) branches));
     }
 
     /** returns true if the current working directory is a Gitlet repository */
@@ -0,0 +1,259 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/** A persistent index from fixed-size binary keys to int values, which supports looking up a range of
+ *  keys in O(log n) time without loading the whole index.
+ *  The index is stored in two files :
+ *  <ol>
+ *  <li> The base file, which stores the entries sorted by key. It is memory mapped and binary searched. </li>
+ *  <li> The log file, which stores the entries added since the base file was written, in the order in
+ *       which they were added. It is read and sorted in memory on the first lookup. </li>
+ *  </ol>
+ *  Once the log grows past a fraction of the base, both are merged into a new base file.
+ *
+ *  @author Rishikesh S
+ */
+class SortedIndex {
+
+    /** Minimum number of entries in the log before it is merged into the base */
+    private static final int MIN_LOG_ENTRIES = 1024;
+
+    /** The log is merged into the base once it has more than 1/LOG_FRACTION as many entries as the base */
+    private static final int LOG_FRACTION = 8;
+
+    /** The file storing the sorted entries */
+    private final File base_file;
+
+    /** The file storing the recently added entries */
+    private final File log_file;
+
+    /** Size of the keys in bytes */
+    private final int key_size;
+
+    /** Size of an entry : key and value */
+    private final int entry_size;
+
+    /** The memory mapped base file, loaded lazily. Null if not loaded yet */
+    private ByteBuffer base;
+
+    /** The entries of the log file sorted by key, loaded lazily. Null if not loaded yet */
+    private List<Entry> log;
+
+    /** Represents an entry of the index */
+    static class Entry {
+        final byte[] key;
+        final int value;
+
+        Entry (byte[] key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /** Orders the entries by key (as unsigned bytes) and then by value */
+    private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int cmp = Arrays.compareUnsigned(a.key, b.key);
+            return cmp != 0 ? cmp : Integer.compare(a.value, b.value);
+        }
+    };
+
+    /** Constructor */
+    SortedIndex (File base_file, File log_file, int key_size) {
+        this.base_file = base_file;
+        this.log_file = log_file;
+        this.key_size = key_size;
+        this.entry_size = key_size + 4;
+    }
+
+    /** Adds the given entries to the index. They are written to the log right after its last complete
+     *  entry, over what is left of an entry whose write was interrupted, so that they are not misaligned.
+     */
+    void add (List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(entries.size() * this.entry_size);
+        for (Entry e : entries) {
+            buffer.put(e.key, 0, this.key_size);
+            buffer.putInt(e.value);
+        }
+        buffer.flip();
+        try (FileChannel out = FileChannel.open(this.log_file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            long end = out.size() / this.entry_size * this.entry_size;
+            out.truncate(end);
+            while (buffer.hasRemaining()) {
+                out.write(buffer, end + buffer.position());
+            }
+        } catch (IOException e) {
+            throw Utils.error("Error when writing to %s", this.log_file.getName());
+        }
+        this.log = null;
+        long log_entries = this.log_file.length() / this.entry_size;
+        long base_entries = this.base_file.length() / this.entry_size;
+        if (log_entries > MIN_LOG_ENTRIES && log_entries * LOG_FRACTION > base_entries) {
+            this.compact();
+        }
+    }
+
+    /** Returns the entries whose keys lie between LOW and HIGH (both inclusive), sorted by key. Both
+     *  bounds must be key_size bytes long.
+     */
+    List<Entry> range (byte[] low, byte[] high) {
+        List<Entry> result = new ArrayList<>();
+        if (this.base == null && this.base_file.exists()) {
+            this.base = Utils.mapFile(this.base_file);
+        }
+        if (this.base != null) {
+            int count = this.base.limit() / this.entry_size;
+            for (int i = this.lowerBound(this.base, count, low); i < count; i += 1) {
+                Entry e = this.entryAt(this.base, i);
+                if (Arrays.compareUnsigned(e.key, high) > 0) {
+                    break;
+                }
+                result.add(e);
+            }
+        }
+        if (this.log == null) {
+            this.log = this.readLog();
+            this.log.sort(ENTRY_ORDER);
+        }
+        if (!this.log.isEmpty()) {
+            int start = Collections.binarySearch(this.log, new Entry(low, Integer.MIN_VALUE), ENTRY_ORDER);
+            /* No entry has the value Integer.MIN_VALUE, so the search always gives the insertion point */
+            for (int i = start < 0 ? -start - 1 : start; i < this.log.size(); i += 1) {
+                Entry e = this.log.get(i);
+                if (Arrays.compareUnsigned(e.key, high) > 0) {
+                    break;
+                }
+                result.add(e);
+            }
+            result.sort(ENTRY_ORDER);
+        }
+        return result;
+    }
+
+    /** Returns the values of the entries with the given key */
+    List<Integer> lookup (byte[] key) {
+        List<Integer> values = new ArrayList<>();
+        for (Entry e : this.range(key, key)) {
+            if (values.isEmpty() || values.get(values.size() - 1) != e.value) {
+                values.add(e.value);
+            }
+        }
+        return values;
+    }
+
+    /** Drops the loaded base and log, so that they are read again on the next lookup. Used when another
+     *  process may have changed the index
+     */
+    void invalidate () {
+        this.base = null;
+        this.log = null;
+    }
+
+    /** Deletes both files of the index */
+    void clear () {
+        this.base_file.delete();
+        this.log_file.delete();
+        this.base = null;
+        this.log = null;
+    }
+
+    /** Merges the log into the base. The new base is written to a temporary file and renamed over the
+     *  old one before the log is deleted, so an interrupted merge at worst leaves duplicate entries.
+     */
+    private void compact () {
+        List<Entry> entries = this.readLog();
+        if (this.base_file.exists()) {
+            ByteBuffer current_base = Utils.mapFile(this.base_file);
+            int count = current_base.limit() / this.entry_size;
+            for (int i = 0; i < count; i += 1) {
+                entries.add(this.entryAt(current_base, i));
+            }
+        }
+        entries.sort(ENTRY_ORDER);
+        File temp = new File(this.base_file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            Entry previous = null;
+            for (Entry e : entries) {
+                if (previous == null || ENTRY_ORDER.compare(previous, e) != 0) {
+                    out.write(e.key);
+                    out.writeInt(e.value);
+                }
+                previous = e;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw Utils.error("Error when writing %s", this.base_file.getName());
+        }
+        try {
+            Files.move(temp.toPath(), this.base_file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw Utils.error("Error when writing %s", this.base_file.getName());
+        }
+        this.log_file.delete();
+        this.base = null;
+        this.log = null;
+    }
+
+    /** Returns the entries of the log file */
+    private List<Entry> readLog () {
+        List<Entry> entries = new ArrayList<>();
+        if (!this.log_file.exists()) {
+            return entries;
+        }
+        ByteBuffer log = ByteBuffer.wrap(Utils.readContents(this.log_file));
+        /* An entry may be incomplete if a previous command was interrupted while appending to the log. It is
+         * written over by the next add
+         */
+        int count = log.limit() / this.entry_size;
+        for (int i = 0; i < count; i += 1) {
+            entries.add(this.entryAt(log, i));
+        }
+        return entries;
+    }
+
+    /** Returns the entry at the given position of BUFFER */
+    private Entry entryAt (ByteBuffer buffer, int position) {
+        byte[] key = new byte[this.key_size];
+        buffer.get(position * this.entry_size, key);
+        return new Entry(key, buffer.getInt(position * this.entry_size + this.key_size));
+    }
+
+    /** Returns the position of the first of the COUNT sorted entries of BASE whose key is not less than KEY */
+    private int lowerBound (ByteBuffer base, int count, byte[] key) {
+        int low = 0;
+        int high = count;
+        byte[] probe = new byte[this.key_size];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            base.get(mid * this.entry_size, probe);
+            if (Arrays.compareUnsigned(probe, key) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
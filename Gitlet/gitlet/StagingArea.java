@@ -2,25 +2,87 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 /** Represents the staging area of the version control system
  *  Stores the staged files and their Sha1 hashes in a Hashmap
+ *  Also acts as the index of the working directory : it records the metadata (see FileStat) of the files
+ *  which were hashed by add or written by checkout, so that unchanged files need not be hashed again.
  *  Is implemented as Serializable as the staging area should persist between multiple executions
  */
 public class StagingArea implements Serializable {
+
+    /** Staging areas are encoded with Codec. Those serialized by the first version of the class are read
+     *  through Version1 (see Codec).
+     */
+    private static final long serialVersionUID = -8143839918758781981L;
     /** Stores the staged files and their Sha1 hashes. Key is file name and value is their hash*/
     private TreeMap<String, String> staged_files;
 
     /** Stores the staged for removal files */
     private TreeSet<String> removal_staged_files;
 
+    /** Stores the metadata of the files in the working directory. Key is the file name */
+    private TreeMap<String, FileStat> file_stats;
+
+    /** Whether workingFileHashes recorded new metadata (see takeStatsChanged) */
+    private transient boolean stats_changed;
+
     /** Constructor */
     public StagingArea () {
         this.staged_files = new TreeMap<>();
         this.removal_staged_files = new TreeSet<>();
+        this.file_stats = new TreeMap<>();
+    }
+
+    /** Returns the encoding of the staging area (see Codec) */
+    public byte[] toBytes () {
+        Codec.Writer out = new Codec.Writer(Codec.STAGING_AREA);
+        out.writeVarint(this.staged_files.size());
+        for (Map.Entry<String, String> entry : this.staged_files.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeHash(entry.getValue());
+        }
+        out.writeVarint(this.removal_staged_files.size());
+        for (String file_name : this.removal_staged_files) {
+            out.writeString(file_name);
+        }
+        out.writeVarint(this.file_stats.size());
+        for (Map.Entry<String, FileStat> entry : this.file_stats.entrySet()) {
+            out.writeString(entry.getKey());
+            entry.getValue().encode(out);
+        }
+        return out.toBytes();
+    }
+
+    /** Returns the staging area encoded in BYTES, which may also have been written with Java serialization */
+    public static StagingArea fromBytes (byte[] bytes) {
+        if (Codec.isSerialized(bytes)) {
+            return Codec.deserialize(bytes, StagingArea.class);
+        }
+        Codec.Reader in = Codec.reader(bytes, Codec.STAGING_AREA);
+        StagingArea staging_area = new StagingArea();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            String file_name = in.readString();
+            staging_area.staged_files.put(file_name, in.readHash());
+        }
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            staging_area.removal_staged_files.add(in.readString());
+        }
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            String file_name = in.readString();
+            staging_area.file_stats.put(file_name, FileStat.decode(in));
+        }
+        return staging_area;
     }
 
     /** Getter method that returns all the currently staged (for addition) files */
@@ -43,21 +105,60 @@ public class StagingArea implements Serializable {
         return this.staged_files.get(file_name);
     }
 
-    /** 'Unstages' the given file. Removes the file from the STAGED_FILES directory */
+    /** 'Unstages' the given file. Removes the file from the STAGED_FILES directory, unless another
+     *  staged file has the same contents.
+     */
     public void unStageFile (String file_name) {
         String file_hash = this.staged_files.get(file_name);
         this.staged_files.remove(file_name);
         File file = Utils.join(Repository.STAGED_FILES_DIR, file_hash);
-        if (file.exists()) {
+        if (file.exists() && !this.staged_files.containsValue(file_hash)) {
             file.delete();
         }
     }
 
-    /** Stages the given file. Adds the file to the STAGED_FILES directory */
+    /** Stages the given file. Adds the file to the STAGED_FILES directory, compressed (see Compression) */
     public void stageFile (String file_name, String file_hash) {
         this.staged_files.put(file_name, file_hash);
         File file = Utils.join(Repository.STAGED_FILES_DIR, file_hash);
-        Utils.writeContents(file, Utils.readContentsAsString(Utils.join(Repository.CWD, file_name)));
+        /* A staged file may be hard linked to a committed blob, so it is replaced rather than overwritten */
+        file.delete();
+        Compression.compressFile(Utils.join(Repository.CWD, file_name), file);
+    }
+
+    /** Stages the given file, whose contents have already been copied to the STAGED_FILES directory
+     *  (see copyToStaging). Staged contents which are no longer needed are only deleted by
+     *  pruneStagedFiles.
+     */
+    public void stageCopiedFile (String file_name, String file_hash) {
+        this.staged_files.put(file_name, file_hash);
+    }
+
+    /** 'Unstages' the given file without deleting its contents from the STAGED_FILES directory. Staged
+     *  contents which are no longer needed are only deleted by pruneStagedFiles.
+     */
+    public void unStageCopiedFile (String file_name) {
+        this.staged_files.remove(file_name);
+    }
+
+    /** Deletes the contents in the STAGED_FILES directory which no staged file refers to */
+    public void pruneStagedFiles () {
+        for (String file : Utils.plainFilenamesIn(Repository.STAGED_FILES_DIR)) {
+            if (!this.staged_files.containsValue(file)) {
+                Utils.join(Repository.STAGED_FILES_DIR, file).delete();
+            }
+        }
+    }
+
+    /** Copies the given file in the working directory to the STAGED_FILES directory, unless contents
+     *  with the same hash are already there. Does not modify the staging area itself, so it is safe to
+     *  call from several threads.
+     */
+    public static void copyToStaging (String file_name, String file_hash) {
+        File file = Utils.join(Repository.STAGED_FILES_DIR, file_hash);
+        if (!file.exists()) {
+            Compression.compressFile(Utils.join(Repository.CWD, file_name), file);
+        }
     }
 
     /** Returns true if the given file is staged for removal */
@@ -96,4 +197,136 @@ public class StagingArea implements Serializable {
     public Set<String> getStagedFileNames () {
         return this.staged_files.keySet();
     }
+
+    /** Returns the hash of the given file in the working directory. The recorded hash is used if the
+     *  metadata of the file has not changed since it was recorded. Otherwise the file is hashed and its
+     *  metadata recorded again.
+     */
+    public String workingFileHash (String file_name) {
+        File file = Utils.join(Repository.CWD, file_name);
+        FileStat stat = this.file_stats.get(file_name);
+        if (stat != null && stat.matches(file)) {
+            return stat.getHash();
+        }
+        String file_hash = Utils.sha1(file);
+        this.recordStat(file_name, file_hash);
+        return file_hash;
+    }
+
+    /** Returns the hashes of the given files in the working directory. Files which do not exist are left
+     *  out. As in workingFileHash, only the files whose metadata changed are hashed; they are hashed in
+     *  parallel and their new metadata is recorded.
+     */
+    public HashMap<String, String> workingFileHashes (Collection<String> file_names) {
+        return this.workingFileHashes(file_names, null);
+    }
+
+    /** Same as workingFileHashes(FILE_NAMES), with the working directory already scanned (see
+     *  WorkingTreeScanner). The files which are not in SCAN do not exist, and the files which the watcher
+     *  saw no change to keep their recorded hash. If SCAN is null, the metadata is read from the files.
+     */
+    public HashMap<String, String> workingFileHashes (Collection<String> file_names, WorkingTreeScanner.Scan scan) {
+        HashMap<String, String> hashes = new HashMap<>();
+        /* With the metadata at hand, unchanged and missing files are settled right away, and only the
+         * changed files are handed to the worker threads
+         */
+        List<String> pending = new ArrayList<>();
+        for (String file_name : file_names) {
+            if (scan == null) {
+                pending.add(file_name);
+                continue;
+            }
+            BasicFileAttributes current = scan.getAttributes(file_name);
+            FileStat stat = this.file_stats.get(file_name);
+            if (!scan.contains(file_name)) {
+                this.stats_changed |= this.file_stats.remove(file_name) != null;
+            }
+            else if (stat != null && (current == null || stat.matches(current))) {
+                /* Without metadata, the file did not change since the snapshot of the watcher */
+                hashes.put(file_name, stat.getHash());
+            }
+            else {
+                pending.add(file_name);
+            }
+        }
+
+        List<Callable<FileStat>> tasks = new ArrayList<>();
+        for (final String file_name : pending) {
+            final FileStat stat = this.file_stats.get(file_name);
+            tasks.add(() -> {
+                File file = Utils.join(Repository.CWD, file_name);
+                BasicFileAttributes current = FileStat.readAttributes(file);
+                if (current == null || !current.isRegularFile()) {
+                    return null;
+                }
+                if (stat != null && stat.matches(current)) {
+                    return stat;
+                }
+                return FileStat.of(file, Utils.sha1(file));
+            });
+        }
+        List<FileStat> stats = Parallel.run(tasks, Parallel.DEFAULT_THREADS);
+
+        int i = 0;
+        for (String file_name : pending) {
+            FileStat stat = stats.get(i);
+            i += 1;
+            if (stat == null) {
+                this.stats_changed |= this.file_stats.remove(file_name) != null;
+                continue;
+            }
+            this.stats_changed |= this.file_stats.put(file_name, stat) != stat;
+            hashes.put(file_name, stat.getHash());
+        }
+        return hashes;
+    }
+
+    /** Returns true if workingFileHashes recorded new metadata since the last call, in which case it is worth
+     *  saving even if nothing else changed
+     */
+    public boolean takeStatsChanged () {
+        boolean changed = this.stats_changed;
+        this.stats_changed = false;
+        return changed;
+    }
+
+    /** Returns the recorded metadata of the given file, or null if there is none */
+    public FileStat getStat (String file_name) {
+        return this.file_stats.get(file_name);
+    }
+
+    /** Records the given metadata for the given file */
+    public void putStat (String file_name, FileStat stat) {
+        this.file_stats.put(file_name, stat);
+    }
+
+    /** Records the metadata of the given file in the working directory, whose contents have the given hash */
+    public void recordStat (String file_name, String file_hash) {
+        FileStat stat = FileStat.of(Utils.join(Repository.CWD, file_name), file_hash);
+        if (stat == null) {
+            this.file_stats.remove(file_name);
+        }
+        else {
+            this.file_stats.put(file_name, stat);
+        }
+    }
+
+    /** Forgets the metadata of the given file, e.g. when it is removed from the working directory */
+    public void forgetStat (String file_name) {
+        this.file_stats.remove(file_name);
+    }
+
+    /** The fields of the first version of the class, which did not record the metadata of the files */
+    static class Version1 implements Serializable {
+        private static final long serialVersionUID = -5891076849520087880L;
+        private TreeMap<String, String> staged_files;
+        private TreeSet<String> removal_staged_files;
+
+        private Object readResolve () {
+            StagingArea staging_area = new StagingArea();
+            staging_area.staged_files.putAll(this.staged_files);
+            staging_area.removal_staged_files.addAll(this.removal_staged_files);
+            return staging_area;
+        }
+    }
 }
@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** Represents a gitlet tree object : the contents of a single directory at the time of a commit.
+ *  A tree maps the names of the files directly inside the directory to the hashes of their blobs, and
+ *  the names of its subdirectories to the hashes of their trees. Trees are content addressed like the
+ *  other objects, so a directory which did not change between two commits is stored once and shared by
+ *  both. A commit only references the tree of the working directory.
+ *
+ *  @author Rishikesh S
+ */
+public class Tree {
+
+    /** The files directly inside this directory and the hashes of their blobs */
+    private final TreeMap<String, String> blobs = new TreeMap<>();
+
+    /** The subdirectories of this directory and the hashes of their trees */
+    private final TreeMap<String, String> subtrees = new TreeMap<>();
+
+    /** Returns true if the directory holds no files or subdirectories */
+    public boolean isEmpty () {
+        return this.blobs.isEmpty() && this.subtrees.isEmpty();
+    }
+
+    /** Returns the hashes of the blobs of the files directly inside the directory */
+    public Collection<String> getBlobHashes () {
+        return this.blobs.values();
+    }
+
+    /** Returns the hashes of the trees of the subdirectories */
+    public Collection<String> getSubtreeHashes () {
+        return this.subtrees.values();
+    }
+
+    /** Returns the Sha1 hash of the tree object, computed from its encoding */
+    public String getHash () {
+        return Utils.sha1(this.toBytes());
+    }
+
+    /** Returns the encoding of the tree (see Codec) */
+    public byte[] toBytes () {
+        Codec.Writer out = new Codec.Writer(Codec.TREE);
+        out.writeVarint(this.blobs.size());
+        for (Map.Entry<String, String> entry : this.blobs.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeHash(entry.getValue());
+        }
+        out.writeVarint(this.subtrees.size());
+        for (Map.Entry<String, String> entry : this.subtrees.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeHash(entry.getValue());
+        }
+        return out.toBytes();
+    }
+
+    /** Returns the tree encoded in BYTES */
+    public static Tree fromBytes (byte[] bytes) {
+        Codec.Reader in = Codec.reader(bytes, Codec.TREE);
+        Tree tree = new Tree();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            String name = in.readString();
+            tree.blobs.put(name, in.readHash());
+        }
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            String name = in.readString();
+            tree.subtrees.put(name, in.readHash());
+        }
+        return tree;
+    }
+
+    /** Saves the tree object to disk (unless an identical tree is already saved) and returns its hash */
+    public String save () {
+        String tree_hash = this.getHash();
+        Repository.OBJECTS.writeTree(tree_hash, this);
+        return tree_hash;
+    }
+
+    /** Returns the hash of the blob of the file at PATH (relative to the directory of the tree TREE_HASH,
+     *  with '/' separating the directories), or null if there is no such file. Only the trees on the way to
+     *  the file are read.
+     */
+    public static String lookup (String tree_hash, String path) {
+        Tree tree = Repository.OBJECTS.readTree(tree_hash);
+        int slash = path.indexOf('/');
+        while (slash >= 0) {
+            String subtree_hash = tree.subtrees.get(path.substring(0, slash));
+            if (subtree_hash == null) {
+                return null;
+            }
+            tree = Repository.OBJECTS.readTree(subtree_hash);
+            path = path.substring(slash + 1);
+            slash = path.indexOf('/');
+        }
+        return tree.blobs.get(path);
+    }
+
+    /** Returns the paths of all the files under the tree TREE_HASH and the hashes of their blobs */
+    public static TreeMap<String, String> flatten (String tree_hash) {
+        TreeMap<String, String> files = new TreeMap<>();
+        flatten(tree_hash, "", files);
+        return files;
+    }
+
+    /** Adds the files under the tree TREE_HASH to FILES, with PREFIX prepended to their paths */
+    private static void flatten (String tree_hash, String prefix, TreeMap<String, String> files) {
+        Tree tree = Repository.OBJECTS.readTree(tree_hash);
+        for (Map.Entry<String, String> entry : tree.blobs.entrySet()) {
+            files.put(prefix + entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : tree.subtrees.entrySet()) {
+            flatten(entry.getValue(), prefix + entry.getKey() + "/", files);
+        }
+    }
+
+    /** Returns the files which differ between the trees FROM_HASH and TO_HASH, mapped to the hashes of
+     *  their blobs in TO_HASH (or to null for the files which are not in TO_HASH). Either tree may be null
+     *  for an empty tree. Subtrees with the same hash in both trees are skipped without being read, so
+     *  the cost is proportional to the size of the difference.
+     */
+    public static TreeMap<String, String> diff (String from_hash, String to_hash) {
+        TreeMap<String, String> changes = new TreeMap<>();
+        diff(from_hash, to_hash, "", changes);
+        return changes;
+    }
+
+    /** Adds the files which differ between the trees FROM_HASH and TO_HASH to CHANGES, with PREFIX
+     *  prepended to their paths
+     */
+    private static void diff (String from_hash, String to_hash, String prefix, TreeMap<String, String> changes) {
+        if (Objects.equals(from_hash, to_hash)) {
+            return;
+        }
+        Tree from = from_hash == null ? new Tree() : Repository.OBJECTS.readTree(from_hash);
+        Tree to = to_hash == null ? new Tree() : Repository.OBJECTS.readTree(to_hash);
+        TreeMap<String, String> all_blobs = new TreeMap<>(from.blobs);
+        all_blobs.putAll(to.blobs);
+        for (String name : all_blobs.keySet()) {
+            if (!Objects.equals(from.blobs.get(name), to.blobs.get(name))) {
+                changes.put(prefix + name, to.blobs.get(name));
+            }
+        }
+        TreeMap<String, String> all_subtrees = new TreeMap<>(from.subtrees);
+        all_subtrees.putAll(to.subtrees);
+        for (String name : all_subtrees.keySet()) {
+            diff(from.subtrees.get(name), to.subtrees.get(name), prefix + name + "/", changes);
+        }
+    }
+
+    /** Applies CHANGES to the tree TREE_HASH and returns the hash of the resulting tree. CHANGES maps the
+     *  paths of files to the hashes of their new blobs, or to null for the files to be removed. Only the
+     *  trees on the paths of the changed files are rewritten; every other subtree is shared with the
+     *  original tree. Directories left empty are removed.
+     */
+    public static String update (String tree_hash, SortedMap<String, String> changes) {
+        Tree updated = updateTree(tree_hash, changes);
+        return (updated == null ? new Tree() : updated).save();
+    }
+
+    /** Applies CHANGES (with paths relative to the directory of the tree TREE_HASH, which may be null for
+     *  a new directory) and returns the new tree, with its subtrees saved. Returns null if the new tree is
+     *  empty.
+     */
+    private static Tree updateTree (String tree_hash, SortedMap<String, String> changes) {
+        Tree tree = new Tree();
+        if (tree_hash != null) {
+            /* Trees read from the store are shared, so the changes are applied to a copy */
+            Tree original = Repository.OBJECTS.readTree(tree_hash);
+            tree.blobs.putAll(original.blobs);
+            tree.subtrees.putAll(original.subtrees);
+        }
+        /* The changes are sorted, so the changes inside each subdirectory are next to each other */
+        String directory = null;
+        TreeMap<String, String> directory_changes = new TreeMap<>();
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            String path = entry.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (entry.getValue() == null) {
+                    tree.blobs.remove(path);
+                }
+                else {
+                    tree.blobs.put(path, entry.getValue());
+                }
+                continue;
+            }
+            String name = path.substring(0, slash);
+            if (directory != null && !directory.equals(name)) {
+                tree.updateSubtree(directory, directory_changes);
+                directory_changes = new TreeMap<>();
+            }
+            directory = name;
+            directory_changes.put(path.substring(slash + 1), entry.getValue());
+        }
+        if (directory != null) {
+            tree.updateSubtree(directory, directory_changes);
+        }
+        return tree.isEmpty() ? null : tree;
+    }
+
+    /** Applies CHANGES to the subdirectory NAME of this tree, saving its new tree */
+    private void updateSubtree (String name, SortedMap<String, String> changes) {
+        Tree subtree = updateTree(this.subtrees.get(name), changes);
+        if (subtree == null) {
+            this.subtrees.remove(name);
+        }
+        else {
+            this.subtrees.put(name, subtree.save());
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
+import java.util.HexFormat;
 import java.util.List;
 
 
@@ -47,11 +54,7 @@ class Utils {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
+            return bytesToHash(md.digest(), 0);
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
@@ -63,6 +66,46 @@ class Utils {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** Size of the chunks in which files are read when hashing or copying them. */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /** Returns the SHA-1 hash of the contents of FILE. The file is read in
+     *  chunks of CHUNK_SIZE bytes, so it never has to fit in memory.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static String sha1(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                md.update(chunk, 0, read);
+            }
+            return bytesToHash(md.digest(), 0);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The length of a complete SHA-1 UID in bytes. */
+    static final int UID_BYTES = UID_LENGTH / 2;
+
+    /** Lower case hexadecimal conversions of UIDs, which are done for
+     *  every object read, so must not go through a Formatter. */
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** Returns the UID_BYTES raw bytes of the hexadecimal SHA-1 UID HASH. */
+    static byte[] hashToBytes(String hash) {
+        return HEX.parseHex(hash, 0, UID_LENGTH);
+    }
+
+    /** Returns the hexadecimal SHA-1 UID stored in the UID_BYTES bytes of
+     *  BYTES starting at OFFSET. */
+    static String bytesToHash(byte[] bytes, int offset) {
+        return HEX.formatHex(bytes, offset, offset + UID_BYTES);
+    }
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -88,6 +131,16 @@ class Utils {
         return restrictedDelete(new File(file));
     }
 
+    /** Deletes the directories holding FILE which are empty, going up the directory tree until a
+     *  non-empty directory or STOP (which is never deleted) is reached.
+     */
+    static void deleteEmptyParents(File file, File stop) {
+        File dir = file.getParentFile();
+        while (dir != null && !dir.equals(stop) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
     /* READING AND WRITING FILE CONTENTS */
 
     /** Return the entire contents of FILE as a byte array.  FILE must
@@ -136,6 +189,42 @@ class Utils {
         }
     }
 
+    /** Copy the contents of SOURCE to DEST, creating or overwriting it as
+     *  needed. The bytes are transferred by the file system without passing
+     *  through the Java heap.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static void copyFile(File source, File dest) {
+        try (FileChannel in = FileChannel.open(source.toPath(),
+                                               StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(),
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the remaining bytes of BUFFER to FILE, creating or overwriting
+     *  it as needed.  Throws IllegalArgumentException in case of problems. */
+    static void writeContents(File file, ByteBuffer buffer) {
+        try (FileChannel out = FileChannel.open(file.toPath(),
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
@@ -152,6 +241,23 @@ class Utils {
         }
     }
 
+    /** Return an object of type T read from the serialized bytes CONTENTS,
+     *  casting it to EXPECTEDCLASS.  Throws IllegalArgumentException in case
+     *  of problems. */
+    static <T extends Serializable> T deserialize(byte[] contents,
+                                                  Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(contents));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Write OBJ to FILE. */
     static void writeObject(File file, Serializable obj) {
         writeContents(file, serialize(obj));
@@ -188,6 +294,17 @@ class Utils {
         return plainFilenamesIn(new File(dir));
     }
 
+    /** Memory maps the whole of FILE for reading.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static MappedByteBuffer mapFile(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /* OTHER FILE UTILITIES */
 
     /** Return the concatentation of FIRST and OTHERS into a File designator,
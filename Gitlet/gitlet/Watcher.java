@@ -0,0 +1,459 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Watches the working directory for changes, so that commands do not have to list all of it.
+ *  gitlet watch runs a process which registers every directory of the working directory with a
+ *  WatchService, and appends the path of every file or directory which is created, modified or deleted
+ *  to a journal in WATCH_DIR, one per line, until gitlet watch stop. The journal starts with a session
+ *  id, which is new every time a watcher starts.
+ *
+ *  status lists the whole working directory once while a watcher runs, and saves the list of files as a
+ *  snapshot, along with the session id and the position in the journal it is up to date with. The next
+ *  scans (see WorkingTreeScanner) start from the snapshot and only look at the paths written to the
+ *  journal since. If the watcher stopped, was restarted, or lost events, the snapshot is not used.
+ *
+ *  The watcher only reads the events some time after the changes were made, so a scan first syncs with
+ *  it : it creates a marker file in SYNC_DIR, which the watcher deletes once it has journaled every event
+ *  read before the marker's. The journal position is only taken once the marker is gone, so it covers
+ *  every change made before the scan. If the watcher does not answer in time, the snapshot is not used.
+ *
+ *  Once the journal grows past watch.journal_limit bytes (see Config), the watcher compacts it into the
+ *  journal of a new session, which only lists the paths changed since the snapshot, each once, and moves
+ *  the snapshot to the start of the new session. Without a snapshot of the current session, the new
+ *  journal starts empty and the next scan lists the whole working directory.
+ *
+ *  @author Rishikesh S
+ */
+public class Watcher {
+
+    /** The journal of the changed paths */
+    static final File JOURNAL_FILE = Utils.join(Repository.WATCH_DIR, "journal");
+
+    /** File locked by the running watcher */
+    static final File LOCK_FILE = Utils.join(Repository.WATCH_DIR, "lock");
+
+    /** The list of files of the working directory at some position of the journal */
+    static final File SNAPSHOT_FILE = Utils.join(Repository.WATCH_DIR, "snapshot");
+
+    /** File created by gitlet watch stop to stop the watcher */
+    static final File STOP_FILE = Utils.join(Repository.WATCH_DIR, "stop");
+
+    /** Directory in which the scans create the marker files the watcher deletes to sync with them */
+    static final File SYNC_DIR = Utils.join(Repository.WATCH_DIR, "sync");
+
+    /** Line written to the journal when events were lost, after which every path must be looked at */
+    private static final String OVERFLOW = "/";
+
+    /** Interval at which the watcher checks whether it was asked to stop, in milliseconds */
+    private static final long POLL_INTERVAL = 200;
+
+    /** Time a scan waits for the watcher to delete its marker file, in milliseconds */
+    private static final long SYNC_TIMEOUT = 2000;
+
+    /** Number of bytes at the end of the journal searched for the end of the last complete line */
+    private static final int TAIL_SIZE = 64 * 1024;
+
+    /** Default size of the journal above which it is compacted, in bytes */
+    private static final long DEFAULT_JOURNAL_LIMIT = 4L * 1024 * 1024;
+
+    /** A position in the journal of a watcher */
+    static class Position {
+        /** The session id of the watcher */
+        final String session;
+
+        /** Offset in the journal, just after a complete line */
+        final long offset;
+
+        Position (String session, long offset) {
+            this.session = session;
+            this.offset = offset;
+        }
+    }
+
+    /** The files of the working directory at a position of the journal */
+    static class Snapshot {
+        private final Position position;
+        private final TreeSet<String> files;
+
+        Snapshot (Position position, TreeSet<String> files) {
+            this.position = position;
+            this.files = files;
+        }
+
+        Position getPosition () {
+            return this.position;
+        }
+
+        TreeSet<String> getFiles () {
+            return this.files;
+        }
+    }
+
+    /** Runs the watcher of the repository in the current directory until gitlet watch stop */
+    public static void run () {
+        Repository.WATCH_DIR.mkdirs();
+        try (FileChannel lock_channel = FileChannel.open(LOCK_FILE.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+             FileLock lock = lock_channel.tryLock();
+             WatchService service = FileSystems.getDefault().newWatchService()) {
+            if (lock == null) {
+                System.out.println("A watcher is already running.");
+                return;
+            }
+            STOP_FILE.delete();
+            /* Markers left by scans which gave up waiting for a previous watcher */
+            SYNC_DIR.mkdirs();
+            for (String marker : Utils.plainFilenamesIn(SYNC_DIR)) {
+                Utils.join(SYNC_DIR, marker).delete();
+            }
+            SYNC_DIR.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE);
+            register(service, Repository.CWD.toPath());
+            /* The journal is only published once every directory is registered, so no change is missed */
+            startSession(new TreeSet<>());
+            System.out.printf("Watching %s\n", Repository.CWD.getPath());
+            System.out.flush();
+            try {
+                watch(service);
+            } finally {
+                JOURNAL_FILE.delete();
+                SNAPSHOT_FILE.delete();
+                STOP_FILE.delete();
+            }
+            System.out.println("Watcher stopped.");
+        } catch (IOException e) {
+            System.out.printf("Could not watch %s : %s\n", Repository.CWD.getPath(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Asks the running watcher to stop */
+    public static void stop () {
+        if (!isRunning()) {
+            System.out.println("No watcher is running.");
+            return;
+        }
+        Utils.writeContents(STOP_FILE, "");
+    }
+
+    /** Publishes the journal of a new session, listing PATHS as already changed, and returns its session id.
+     *  The journal is written to a temporary file which is then renamed, so it is either complete or missing.
+     */
+    private static String startSession (Collection<String> paths) throws IOException {
+        String session = UUID.randomUUID().toString();
+        StringBuilder journal = new StringBuilder(session).append('\n');
+        for (String path : paths) {
+            journal.append(path).append('\n');
+        }
+        File temp = new File(JOURNAL_FILE.getPath() + ".tmp");
+        Utils.writeContents(temp, journal.toString());
+        Files.move(temp.toPath(), JOURNAL_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return session;
+    }
+
+    /** Returns a writer appending to the journal */
+    private static Writer openJournal () throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(JOURNAL_FILE, true),
+                StandardCharsets.UTF_8));
+    }
+
+    /** Replaces the journal, which grew past LIMIT bytes, with the journal of a new session. If the snapshot
+     *  is from the current session, the new journal lists the paths changed since the snapshot and the
+     *  snapshot is moved to the start of the new session. Otherwise, or if these paths would still take half
+     *  the limit, the new journal is empty and the snapshot is deleted.
+     */
+    private static void compact (long limit) throws IOException {
+        /* Not through position, as checking the lock from the process holding it would release it */
+        Position end = journalPosition();
+        Snapshot snapshot = end == null ? null : readSnapshot(end);
+        TreeSet<String> changes = snapshot == null ? null : changesBetween(snapshot.getPosition(), end);
+        long size = 0;
+        if (changes != null) {
+            for (String path : changes) {
+                size += path.length() + 1;
+            }
+        }
+        if (changes == null || size > limit / 2) {
+            /* A scan running meanwhile may still write a snapshot of the old session, which is then ignored */
+            SNAPSHOT_FILE.delete();
+            startSession(new TreeSet<>());
+            return;
+        }
+        String session = startSession(changes);
+        /* Scans which read the new journal before the snapshot is moved do not use the old snapshot, which is
+         * from another session
+         */
+        writeSnapshot(new Position(session, session.length() + 1), snapshot.getFiles());
+    }
+
+    /** Writes the paths of the changes reported by SERVICE to the journal until STOP_FILE appears,
+     *  compacting the journal whenever it grows past the limit
+     */
+    private static void watch (WatchService service) throws IOException, InterruptedException {
+        long limit = Math.max(TAIL_SIZE, Config.getLong("watch.journal_limit", DEFAULT_JOURNAL_LIMIT));
+        Writer journal = openJournal();
+        try {
+            while (!STOP_FILE.exists()) {
+                WatchKey key = service.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                List<Path> markers = new ArrayList<>();
+                /* Once a marker is seen, the events read before it are journaled before it is deleted. Their
+                 * keys were queued before the marker's, or are queued again when they are reset.
+                 */
+                while (key != null) {
+                    record(service, key, journal, markers);
+                    key = markers.isEmpty() ? null : service.poll();
+                }
+                /* Readers only look at complete lines, so the journal may be flushed at any point */
+                journal.flush();
+                for (Path marker : markers) {
+                    Files.deleteIfExists(marker);
+                }
+                if (JOURNAL_FILE.length() > limit) {
+                    journal.close();
+                    compact(limit);
+                    journal = openJournal();
+                }
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    /** Writes the paths of the events of KEY to JOURNAL, and adds the marker files created in SYNC_DIR to
+     *  MARKERS
+     */
+    private static void record (WatchService service, WatchKey key, Writer journal, List<Path> markers)
+            throws IOException {
+        Path work_dir = Repository.CWD.toPath();
+        Path gitlet_dir = Repository.GITLET_DIR.toPath();
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                journal.write(OVERFLOW + "\n");
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (dir.equals(SYNC_DIR.toPath())) {
+                markers.add(child);
+                continue;
+            }
+            if (child.startsWith(gitlet_dir)) {
+                continue;
+            }
+            boolean is_directory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+            /* The contents of a directory are reported by the directory itself */
+            if (is_directory && event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+                continue;
+            }
+            if (is_directory && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                register(service, child);
+            }
+            String path = work_dir.relativize(child).toString().replace(File.separatorChar, '/');
+            journal.write(path + "\n");
+        }
+        key.reset();
+    }
+
+    /** Registers DIR and all the directories under it with SERVICE, except the .gitlet directory */
+    private static void register (WatchService service, Path dir) throws IOException {
+        Path gitlet_dir = Repository.GITLET_DIR.toPath();
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory (Path d, BasicFileAttributes attributes) throws IOException {
+                if (d.equals(gitlet_dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                d.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed (Path f, IOException e) {
+                /* Deleted while being registered, which the watcher of its parent reports */
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Returns true if a watcher is running for the repository in the current directory */
+    private static boolean isRunning () {
+        if (!Repository.WATCH_DIR.exists()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(LOCK_FILE.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Returns the current position of the journal of the running watcher, which covers every change made
+     *  before the call. Returns null if no watcher runs, or if it did not sync in time.
+     */
+    static Position position () {
+        if (!JOURNAL_FILE.exists() || !isRunning() || !sync()) {
+            return null;
+        }
+        return journalPosition();
+    }
+
+    /** Waits until the running watcher has journaled the changes made before the call, which it signals by
+     *  deleting a marker file created in SYNC_DIR. Returns false if it did not within SYNC_TIMEOUT.
+     */
+    private static boolean sync () {
+        File marker = Utils.join(SYNC_DIR, UUID.randomUUID().toString());
+        try {
+            Files.createFile(marker.toPath());
+        } catch (IOException e) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SYNC_TIMEOUT);
+        try {
+            while (marker.exists()) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            marker.delete();
+        }
+    }
+
+    /** Returns the current position of the journal, or null if there is no journal */
+    private static Position journalPosition () {
+        try (RandomAccessFile journal = new RandomAccessFile(JOURNAL_FILE, "r")) {
+            String session = journal.readLine();
+            long header_end = journal.getFilePointer();
+            long end = journal.length();
+            /* Only complete lines count, as the watcher may be writing the last one */
+            long start = Math.max(header_end, end - TAIL_SIZE);
+            byte[] tail = new byte[(int) (end - start)];
+            journal.seek(start);
+            journal.readFully(tail);
+            int last = tail.length - 1;
+            while (last >= 0 && tail[last] != '\n') {
+                last -= 1;
+            }
+            return session == null ? null : new Position(session, start + last + 1);
+        } catch (IOException e) {
+            /* The watcher stopped and deleted its journal */
+            return null;
+        }
+    }
+
+    /** Returns the paths written to the journal between the positions FROM and TO, or null if the watcher
+     *  lost events in between or the journal is no longer the one of their session (it was compacted)
+     */
+    static TreeSet<String> changesBetween (Position from, Position to) {
+        TreeSet<String> paths = new TreeSet<>();
+        if (from.offset >= to.offset) {
+            return paths;
+        }
+        byte[] changes = new byte[(int) (to.offset - from.offset)];
+        try (RandomAccessFile journal = new RandomAccessFile(JOURNAL_FILE, "r")) {
+            /* The session is read from the file which was opened, as the journal may be replaced meanwhile */
+            if (!from.session.equals(journal.readLine())) {
+                return null;
+            }
+            journal.seek(from.offset);
+            journal.readFully(changes);
+        } catch (IOException e) {
+            return null;
+        }
+        for (String path : new String(changes, StandardCharsets.UTF_8).split("\n")) {
+            if (path.equals(OVERFLOW)) {
+                return null;
+            }
+            if (!path.isEmpty()) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    /** Returns the snapshot taken by the watcher which is at POSITION, or null if there is none */
+    static Snapshot readSnapshot (Position position) {
+        if (!SNAPSHOT_FILE.exists()) {
+            return null;
+        }
+        String[] lines = Utils.readContentsAsString(SNAPSHOT_FILE).split("\n");
+        if (lines.length < 2 || !lines[0].equals(position.session)) {
+            return null;
+        }
+        long offset = Long.parseLong(lines[1]);
+        if (offset > position.offset) {
+            return null;
+        }
+        TreeSet<String> files = new TreeSet<>();
+        for (int i = 2; i < lines.length; i += 1) {
+            files.add(lines[i]);
+        }
+        return new Snapshot(new Position(position.session, offset), files);
+    }
+
+    /** Saves FILES as the snapshot of the working directory at POSITION. The snapshot is written to a
+     *  temporary file which is then renamed, so it is either complete or missing.
+     */
+    static void writeSnapshot (Position position, Set<String> files) {
+        StringBuilder snapshot = new StringBuilder();
+        snapshot.append(position.session).append('\n').append(position.offset).append('\n');
+        for (String f : files) {
+            snapshot.append(f).append('\n');
+        }
+        File temp = new File(SNAPSHOT_FILE.getPath() + ".tmp");
+        Utils.writeContents(temp, snapshot.toString());
+        try {
+            Files.move(temp.toPath(), SNAPSHOT_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            /* Without a snapshot, the next scan lists the whole working directory */
+            temp.delete();
+        }
+    }
+}
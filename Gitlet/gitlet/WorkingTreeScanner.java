@@ -0,0 +1,208 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Lists the files of the working directory along with their metadata.
+ *  Every directory is listed by its own fork/join task, so the directories of a large working directory
+ *  are listed and their files stat'ed in parallel (on status.threads threads, see Config). The metadata
+ *  is read while listing, so callers can compare it against the recorded metadata (see FileStat) without
+ *  touching the files again.
+ *
+ *  While a watcher is running (see Watcher), the working directory is only listed in full once. The list
+ *  of files is then kept in a snapshot, and later scans only look at the paths which the watcher reported
+ *  as changed since the snapshot.
+ *
+ *  @author Rishikesh S
+ */
+class WorkingTreeScanner {
+
+    /** The result of a scan of the working directory */
+    static class Scan {
+        /** The files of the working directory */
+        private final Set<String> files;
+
+        /** The metadata of the files which may have changed since the snapshot. When the whole working
+         *  directory was listed, this holds every file.
+         */
+        private final Map<String, BasicFileAttributes> attributes;
+
+        /** The position of the watcher's journal the scan is up to date with, or null without a watcher */
+        private final Watcher.Position position;
+
+        /** True if the scan is more recent than the snapshot of the watcher */
+        private final boolean changed;
+
+        Scan (Set<String> files, Map<String, BasicFileAttributes> attributes, Watcher.Position position,
+              boolean changed) {
+            this.files = files;
+            this.attributes = attributes;
+            this.position = position;
+            this.changed = changed;
+        }
+
+        /** Returns the files of the working directory */
+        Set<String> getFiles () {
+            return this.files;
+        }
+
+        /** Returns true if the working directory has the given file */
+        boolean contains (String file_name) {
+            return this.files.contains(file_name);
+        }
+
+        /** Returns the metadata of the given file, or null if it does not exist or if it did not change
+         *  since the snapshot (see isUnchanged)
+         */
+        BasicFileAttributes getAttributes (String file_name) {
+            return this.attributes.get(file_name);
+        }
+
+        /** Returns true if the watcher reported no change to the given file since the snapshot, in which
+         *  case the metadata recorded for it in the staging area is still valid
+         */
+        boolean isUnchanged (String file_name) {
+            return this.files.contains(file_name) && !this.attributes.containsKey(file_name);
+        }
+
+        /** Saves the files of this scan as the new snapshot of the watcher, if a watcher is running and
+         *  the scan found anything new. The metadata of the files which changed must have been recorded
+         *  and saved first, as later scans will trust it for the files which do not change again.
+         */
+        void saveSnapshot () {
+            if (this.position != null && this.changed) {
+                Watcher.writeSnapshot(this.position, this.files);
+            }
+        }
+    }
+
+    /** Returns the files of the working directory ROOT, except those in the directory SKIP. The
+     *  files are listed from the snapshot of the watcher if possible, and from the disk otherwise.
+     */
+    static Scan scan (File root, File skip) {
+        /* The position is taken before listing anything, so no change made while listing is lost */
+        Watcher.Position position = Watcher.position();
+        Scan scan = incrementalScan(position, root, skip);
+        if (scan != null) {
+            return scan;
+        }
+        Map<String, BasicFileAttributes> files = list(root, "", skip);
+        return new Scan(position == null ? files.keySet() : new TreeSet<>(files.keySet()), files, position, true);
+    }
+
+    /** Returns the files of the working directory ROOT from the snapshot of the watcher, or null if no
+     *  watcher is running or if the snapshot is no longer valid. Never lists the whole working directory.
+     */
+    static Scan watched (File root, File skip) {
+        return incrementalScan(Watcher.position(), root, skip);
+    }
+
+    /** Returns the snapshot of the watcher updated with the paths changed since, up to POSITION. Returns
+     *  null if the snapshot was not taken by the same watcher, or if the watcher lost track of the changes.
+     */
+    private static Scan incrementalScan (Watcher.Position position, File root, File skip) {
+        if (position == null) {
+            return null;
+        }
+        Watcher.Snapshot snapshot = Watcher.readSnapshot(position);
+        if (snapshot == null) {
+            return null;
+        }
+        TreeSet<String> dirty_paths = Watcher.changesBetween(snapshot.getPosition(), position);
+        if (dirty_paths == null) {
+            return null;
+        }
+        TreeSet<String> files = snapshot.getFiles();
+        Map<String, BasicFileAttributes> attributes = new HashMap<>();
+        for (String path : dirty_paths) {
+            /* A changed path may be a file or a directory, which may have been created or deleted */
+            files.remove(path);
+            /* '0' is the character after '/', so this is every path under the directory PATH */
+            files.subSet(path + "/", path + "0").clear();
+            File file = Utils.join(root, path);
+            BasicFileAttributes current = FileStat.readAttributes(file);
+            if (current == null) {
+                continue;
+            }
+            if (current.isRegularFile()) {
+                attributes.put(path, current);
+            }
+            else if (current.isDirectory()) {
+                attributes.putAll(list(file, path + "/", skip));
+            }
+        }
+        files.addAll(attributes.keySet());
+        return new Scan(files, attributes, position, !dirty_paths.isEmpty());
+    }
+
+    /** Lists the files under DIR (with PREFIX prepended to their paths, and '/' separating the
+     *  directories) along with their metadata, in no particular order. The directory SKIP is not listed.
+     */
+    private static Map<String, BasicFileAttributes> list (File dir, String prefix, File skip) {
+        Map<String, BasicFileAttributes> files = new ConcurrentHashMap<>();
+        int threads = Math.max(1, Config.getInt("status.threads", Parallel.DEFAULT_THREADS));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new DirectoryScan(dir.toPath(), prefix, skip.toPath(), files));
+        } finally {
+            pool.shutdown();
+        }
+        return files;
+    }
+
+    /** Lists a single directory, forking a task for each of its subdirectories */
+    private static class DirectoryScan extends RecursiveAction {
+        private static final long serialVersionUID = 7394861419706807468L;
+        private final Path dir;
+        private final String prefix;
+        private final Path skip;
+        private final Map<String, BasicFileAttributes> files;
+
+        DirectoryScan (Path dir, String prefix, Path skip, Map<String, BasicFileAttributes> files) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.skip = skip;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute () {
+            List<DirectoryScan> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(this.dir)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        /* The file was deleted while listing the directory */
+                        continue;
+                    }
+                    String name = this.prefix + child.getFileName().toString();
+                    if (attributes.isRegularFile()) {
+                        this.files.put(name, attributes);
+                    }
+                    else if (attributes.isDirectory() && !child.equals(this.skip)) {
+                        subdirectories.add(new DirectoryScan(child, name + "/", this.skip, this.files));
+                    }
+                }
+            } catch (IOException e) {
+                /* The directory was deleted or cannot be read, so it has no files */
+                return;
+            }
+            invokeAll(subdirectories);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package gitlet;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the benchmarks, taking the usual JMH command line options (for instance a regular expression
+ *  selecting the benchmarks to run, or -p file_count=100000). The GC profiler is always added, so the
+ *  results include the allocation rate of every benchmark.
+ *
+ *  @author Rishikesh S
+ */
+public class BenchmarkRunner {
+
+    public static void main (String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
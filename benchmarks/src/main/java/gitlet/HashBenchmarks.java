@@ -0,0 +1,62 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Utils.sha1, on contents held in memory and on a file.
+ *
+ *  @author Rishikesh S
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmarks {
+
+    @Param({"1024", "65536", "1048576"})
+    public int file_size;
+
+    private byte[] contents;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void generate () throws IOException {
+        this.contents = SyntheticRepository.randomText(new Random(61), this.file_size);
+        this.file = Files.createTempFile(SyntheticRepository.baseDir().toPath(), "gitlet-bench-", ".txt").toFile();
+        Utils.writeContents(this.file, (Object) this.contents);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete () {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public String sha1Contents () {
+        return Utils.sha1((Object) this.contents);
+    }
+
+    @Benchmark
+    public String sha1File () {
+        return Utils.sha1(this.file);
+    }
+}
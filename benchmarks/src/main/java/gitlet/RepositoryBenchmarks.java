@@ -0,0 +1,126 @@
+package gitlet;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the commands of gitlet against a synthetic repository (see SyntheticRepository).
+ *  Each benchmark is measured both as a throughput and as a distribution of latencies, and runs in a JVM
+ *  of its own with a freshly generated repository, since benchmarks like commit change the repository.
+ *
+ *  @author Rishikesh S
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmarks {
+
+    /** The generated repository, shared by all the invocations of a benchmark */
+    @State(Scope.Benchmark)
+    public static class Generated {
+        @Param({"1000", "10000"})
+        public int file_count;
+
+        @Param({"1024"})
+        public int file_size;
+
+        @Param({"50"})
+        public int commit_depth;
+
+        /** Number of branches, including master. checkoutBranch needs at least two. */
+        @Param({"4"})
+        public int branch_count;
+
+        SyntheticRepository repo;
+
+        @Setup(Level.Trial)
+        public void generate () {
+            this.repo = SyntheticRepository.create(this.file_count, this.file_size, this.commit_depth,
+                    this.branch_count);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete () {
+            this.repo.delete();
+        }
+    }
+
+    /** A file modified before each invocation, for add */
+    @State(Scope.Thread)
+    public static class ModifiedFile {
+        String file_name;
+
+        @Setup(Level.Invocation)
+        public void modify (Generated generated) {
+            this.file_name = generated.repo.randomFile();
+            generated.repo.modify(this.file_name);
+        }
+    }
+
+    /** A modified file staged before each invocation, for commit */
+    @State(Scope.Thread)
+    public static class StagedFile {
+        @Setup(Level.Invocation)
+        public void stage (Generated generated) {
+            String file_name = generated.repo.randomFile();
+            generated.repo.modify(file_name);
+            generated.repo.dispatch("add", file_name);
+        }
+    }
+
+    /** The branch to check out, which goes through every branch in turn */
+    @State(Scope.Thread)
+    public static class NextBranch {
+        String branch;
+        private int next;
+
+        @Setup(Level.Invocation)
+        public void pick (Generated generated) {
+            List<String> branches = generated.repo.getBranches();
+            /* Every other checkout goes back to master, so each one switches branch */
+            this.next += 1;
+            this.branch = this.next % 2 == 0 || branches.isEmpty()
+                    ? "master" : branches.get((this.next / 2) % branches.size());
+        }
+    }
+
+    @Benchmark
+    public void add (Generated generated, ModifiedFile file) {
+        generated.repo.dispatch("add", file.file_name);
+    }
+
+    @Benchmark
+    public void commit (Generated generated, StagedFile file) {
+        generated.repo.dispatch("commit", "Benchmark revision");
+    }
+
+    @Benchmark
+    public void log (Generated generated) {
+        generated.repo.dispatch("log");
+    }
+
+    @Benchmark
+    public void find (Generated generated) {
+        generated.repo.dispatch("find", generated.repo.middleMessage());
+    }
+
+    @Benchmark
+    public void checkoutBranch (Generated generated, NextBranch next) {
+        generated.repo.dispatch("checkout", next.branch);
+    }
+}
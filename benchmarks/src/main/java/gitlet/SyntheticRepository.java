@@ -0,0 +1,221 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** A repository generated for benchmarks, with a given number of files of a given size, a history of a
+ *  given depth on master and a number of branches which each add a commit of their own.
+ *  The repository is generated by running the gitlet commands in this JVM, in a new directory under the
+ *  directory named by the gitlet.bench.dir system property (by default /dev/shm if it exists, so that
+ *  the repository lives in memory, and the temporary directory otherwise). As the directory of a
+ *  repository is fixed when the Repository class is loaded, there can only be one synthetic repository
+ *  per JVM, so benchmarks using it must run in forked JVMs.
+ *
+ *  @author Rishikesh S
+ */
+class SyntheticRepository {
+
+    /** System property naming the directory under which repositories are generated */
+    static final String DIR_PROPERTY = "gitlet.bench.dir";
+
+    /** Number of files in each directory of the working directory */
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    /** Size of the region of a file which is rewritten when the file is modified */
+    private static final int CHANGE_SIZE = 64;
+
+    /** The working directory of the repository */
+    private final File dir;
+
+    /** The repository */
+    private final Repository repo;
+
+    /** The paths of the files of the working directory */
+    private final List<String> files = new ArrayList<>();
+
+    /** The branches other than master */
+    private final List<String> branches = new ArrayList<>();
+
+    /** The messages of the commits on master, oldest first */
+    private final List<String> messages = new ArrayList<>();
+
+    /** Size of the files */
+    private final int file_size;
+
+    /** Source of the contents of the files, seeded so that every run generates the same repository */
+    private final Random random = new Random(61);
+
+    /** Stream the output of the commands is discarded to */
+    private final PrintStream discarded = new PrintStream(OutputStream.nullOutputStream());
+
+    private SyntheticRepository (File dir, int file_size) {
+        this.dir = dir;
+        this.file_size = file_size;
+        this.repo = new Repository();
+    }
+
+    /** Generates a repository of FILE_COUNT files of FILE_SIZE bytes, with COMMIT_DEPTH commits on master
+     *  (including the one adding all the files) and BRANCH_COUNT branches (including master)
+     */
+    static SyntheticRepository create (int file_count, int file_size, int commit_depth, int branch_count) {
+        File dir;
+        try {
+            dir = Files.createTempDirectory(baseDir().toPath(), "gitlet-bench-").toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the repository directory", e);
+        }
+        System.setProperty("user.dir", dir.getPath());
+        if (!Repository.CWD.equals(dir)) {
+            throw new IllegalStateException("A repository was already loaded by this JVM; benchmarks must be forked");
+        }
+        SyntheticRepository synthetic = new SyntheticRepository(dir, file_size);
+        synthetic.generate(file_count, commit_depth, branch_count);
+        return synthetic;
+    }
+
+    /** Returns the directory under which repositories and other files are generated */
+    static File baseDir () {
+        String base = System.getProperty(DIR_PROPERTY);
+        if (base != null) {
+            return new File(base);
+        }
+        File shm = new File("/dev/shm");
+        return shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    /** Returns LENGTH bytes of printable text drawn from RANDOM */
+    static byte[] randomText (Random random, int length) {
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i += 1) {
+            text[i] = (byte) (i % 80 == 79 ? '\n' : ' ' + random.nextInt(95));
+        }
+        return text;
+    }
+
+    /** Runs the commands which generate the history of the repository. The state is only saved at the end,
+     *  like in a batch.
+     */
+    private void generate (int file_count, int commit_depth, int branch_count) {
+        this.repo.deferSaves(true);
+        this.run("init");
+        for (int i = 0; i < file_count; i += 1) {
+            String file_name = String.format("src/d%03d/f%05d.txt", i / FILES_PER_DIRECTORY, i);
+            File file = Utils.join(this.dir, file_name);
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, (Object) randomText(this.random, this.file_size));
+            this.files.add(file_name);
+        }
+        this.run("add", ".");
+        this.commit("Generated revision 0");
+        /* Every later commit changes about one file in a hundred */
+        int changes_per_commit = Math.max(1, file_count / 100);
+        for (int i = 1; i < commit_depth; i += 1) {
+            this.changeAndStage(changes_per_commit);
+            this.commit("Generated revision " + i);
+        }
+        for (int i = 1; i < branch_count; i += 1) {
+            String branch = "branch-" + i;
+            this.run("branch", branch);
+            this.branches.add(branch);
+        }
+        for (String branch : this.branches) {
+            this.run("checkout", branch);
+            this.changeAndStage(changes_per_commit);
+            this.run("commit", "Generated revision of " + branch);
+            this.run("checkout", "master");
+        }
+        this.repo.deferSaves(false);
+        this.repo.flushRepoState();
+    }
+
+    /** Modifies COUNT random files and stages them */
+    private void changeAndStage (int count) {
+        List<String> args = new ArrayList<>();
+        args.add("add");
+        for (int i = 0; i < count; i += 1) {
+            String file_name = this.randomFile();
+            this.modify(file_name);
+            args.add(file_name);
+        }
+        this.run(args.toArray(new String[0]));
+    }
+
+    /** Commits the staged changes to master with the given message */
+    private void commit (String message) {
+        this.run("commit", message);
+        this.messages.add(message);
+    }
+
+    /** Runs a command while generating the repository. Throws an error if the command printed anything,
+     *  as the commands used print nothing when they succeed.
+     */
+    private void run (String... args) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            Main.dispatch(this.repo, args);
+        } finally {
+            System.setOut(console);
+        }
+        if (output.size() > 0) {
+            throw new IllegalStateException(String.join(" ", args) + " : " + output.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Runs a command against the repository, discarding its output */
+    void dispatch (String... args) {
+        PrintStream console = System.out;
+        System.setOut(this.discarded);
+        try {
+            Main.dispatch(this.repo, args);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /** Returns the path of a random file of the working directory */
+    String randomFile () {
+        return this.files.get(this.random.nextInt(this.files.size()));
+    }
+
+    /** Rewrites a small random region of the given file */
+    void modify (String file_name) {
+        File file = Utils.join(this.dir, file_name);
+        byte[] contents = Utils.readContents(file);
+        int start = this.random.nextInt(Math.max(1, contents.length - CHANGE_SIZE));
+        byte[] change = randomText(this.random, Math.min(CHANGE_SIZE, contents.length));
+        System.arraycopy(change, 0, contents, start, change.length);
+        Utils.writeContents(file, (Object) contents);
+    }
+
+    /** Returns the branches other than master */
+    List<String> getBranches () {
+        return this.branches;
+    }
+
+    /** Returns the message of the commit half way through the history of master */
+    String middleMessage () {
+        return this.messages.get(this.messages.size() / 2);
+    }
+
+    /** Deletes the repository and its working directory */
+    void delete () {
+        try (Stream<Path> paths = Files.walk(this.dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not delete " + this.dir, e);
+        }
+    }
+}